@@ -0,0 +1,70 @@
+package org.filestorage.app.service;
+
+import org.filestorage.app.dto.ResourceResponse;
+import org.filestorage.app.mapper.ResourceDataResponseMapper;
+import org.filestorage.app.mapper.ResourceDataResponseMapperImpl;
+import org.filestorage.app.model.MinioResource;
+import org.filestorage.app.model.ResourceMetadata;
+import org.filestorage.app.util.ResourceType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListingBenchmark {
+
+    private static final String PATH = "projects/2024/";
+
+    @Param({"10", "1000", "100000"})
+    private int entries;
+
+    private List<ResourceMetadata> listing;
+    private List<MinioResource> resources;
+    private ResourceDataResponseMapper mapper;
+
+    @Setup
+    public void setup() {
+        listing = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            if (i % 10 == 0) {
+                String name = "folder-" + i + "/";
+                listing.add(new ResourceMetadata((long) i, 1L, PATH + name, PATH, name, null, ResourceType.DIRECTORY, null, null, null, false));
+            } else {
+                String name = "file-" + i + ".txt";
+                listing.add(new ResourceMetadata((long) i, 1L, PATH + name, PATH, name, 1024L * i, ResourceType.FILE, "etag-" + i, null, "objects/1/" + i, false));
+            }
+        }
+        resources = MinioService.toResources(PATH, listing);
+        mapper = new ResourceDataResponseMapperImpl();
+    }
+
+    @Benchmark
+    public List<MinioResource> toResources() {
+        return MinioService.toResources(PATH, listing);
+    }
+
+    @Benchmark
+    public List<ResourceResponse> toResponses() {
+        return resources.stream()
+                .map(mapper::toResponse)
+                .toList();
+    }
+
+    @Benchmark
+    public List<ResourceResponse> listingToResponses() {
+        return MinioService.toResources(PATH, listing).stream()
+                .map(mapper::toResponse)
+                .toList();
+    }
+}
@@ -0,0 +1,57 @@
+package org.filestorage.app.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PathBenchmark {
+
+    private static final String USER_PREFIX = "user-1-files/";
+
+    @Param({"docs/", "projects/2024/reports/quarterly/summary final.pdf", "документы/отчёты/годовой отчёт.docx"})
+    private String path;
+
+    private String encodedPath;
+    private ResourcePath parsed;
+
+    @Setup
+    public void setup() {
+        encodedPath = "/" + URLEncoder.encode(path, StandardCharsets.UTF_8).replace("%2F", "/");
+        parsed = ResourcePath.parse(path);
+    }
+
+    @Benchmark
+    public ResourcePath parse() {
+        return ResourcePath.parse(path);
+    }
+
+    @Benchmark
+    public ResourcePath parseEncoded() {
+        return ResourcePath.parse(encodedPath);
+    }
+
+    @Benchmark
+    public void views(Blackhole blackhole) {
+        blackhole.consume(parsed.parent());
+        blackhole.consume(parsed.name());
+        blackhole.consume(parsed.userKey(USER_PREFIX));
+    }
+
+    @Benchmark
+    public void queryValidation() {
+        QueryValidator.validate("summary_2024.pdf");
+    }
+}
@@ -0,0 +1,84 @@
+package org.filestorage.app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableScheduling
+public class ExecutorConfig {
+
+    @Value("${minio.upload.parallelism}")
+    private int uploadParallelism;
+
+    @Value("${minio.upload.queue-capacity}")
+    private int uploadQueueCapacity;
+
+    @Value("${minio.zip.parallelism}")
+    private int zipParallelism;
+
+    @Value("${minio.zip.queue-capacity}")
+    private int zipQueueCapacity;
+
+    @Value("${preview.parallelism}")
+    private int previewParallelism;
+
+    @Value("${jobs.parallelism}")
+    private int jobParallelism;
+
+    @Value("${jobs.queue-capacity}")
+    private int jobQueueCapacity;
+
+    @Value("${archive.cache.parallelism}")
+    private int archiveCacheParallelism;
+
+    @Value("${archive.cache.queue-capacity}")
+    private int archiveCacheQueueCapacity;
+
+    @Bean
+    public ThreadPoolTaskExecutor uploadExecutor() {
+        return boundedExecutor("upload-", uploadParallelism, uploadQueueCapacity);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor zipExecutor() {
+        return boundedExecutor("zip-", zipParallelism, zipQueueCapacity);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor previewExecutor() {
+        return boundedExecutor("preview-", previewParallelism, previewParallelism * 2);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor jobExecutor() {
+        return boundedExecutor("job-", jobParallelism, jobQueueCapacity);
+    }
+
+    /**
+     * Filling the archive cache is optional work: when the pool is busy new archives are not cached
+     * instead of being stored on the request thread, and shutdown does not wait for pending uploads.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor archiveCacheExecutor() {
+        ThreadPoolTaskExecutor executor = boundedExecutor("archive-cache-", archiveCacheParallelism, archiveCacheQueueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    private ThreadPoolTaskExecutor boundedExecutor(String threadNamePrefix, int parallelism, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
@@ -1,10 +1,21 @@
 package org.filestorage.app.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.filestorage.app.util.HttpTransportMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class MinioConfig {
 
@@ -17,12 +28,68 @@ public class MinioConfig {
     @Value("${minio.secret-key}")
     private String password;
 
+    @Value("${minio.http.max-idle-connections}")
+    private int maxIdleConnections;
+
+    @Value("${minio.http.keep-alive}")
+    private Duration keepAlive;
+
+    @Value("${minio.http.max-requests}")
+    private int maxRequests;
+
+    @Value("${minio.http.max-requests-per-host}")
+    private int maxRequestsPerHost;
+
+    @Value("${minio.http.connect-timeout}")
+    private Duration connectTimeout;
+
+    @Value("${minio.http.read-timeout}")
+    private Duration readTimeout;
+
+    @Value("${minio.http.write-timeout}")
+    private Duration writeTimeout;
+
+    @Value("${minio.http.http2}")
+    private boolean http2;
+
+    /**
+     * HTTP client shared by the sync and async MinIO clients. HTTP/2 is only negotiated over TLS.
+     */
     @Bean
-    public MinioClient minioClient() {
+    public OkHttpClient minioHttpClient(MeterRegistry meterRegistry) {
+        ConnectionPool connectionPool = new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(writeTimeout)
+                .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .eventListenerFactory(new HttpTransportMetrics(meterRegistry, connectionPool, dispatcher))
+                .build();
+    }
+
+    @Bean
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         MinioClient minioClient = MinioClient.builder()
                 .endpoint(minioEndpoint)
                 .credentials(userName, password)
+                .httpClient(minioHttpClient)
                 .build();
         return minioClient;
     }
+
+    @Bean
+    public MinioAsyncClient minioAsyncClient(OkHttpClient minioHttpClient) {
+        return MinioAsyncClient.builder()
+                .endpoint(minioEndpoint)
+                .credentials(userName, password)
+                .httpClient(minioHttpClient)
+                .build();
+    }
 }
@@ -4,13 +4,17 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
+import org.filestorage.app.dto.DirectoryPageResponse;
 import org.filestorage.app.dto.ResourceResponse;
+import org.filestorage.app.exception.QueryNotValidException;
 import org.filestorage.app.mapper.ResourceDataResponseMapper;
 import org.filestorage.app.model.MinioResource;
+import org.filestorage.app.model.ResourcePage;
 import org.filestorage.app.model.User;
 import org.filestorage.app.service.MinioService;
-import org.filestorage.app.util.PathNormalizer;
 import org.filestorage.app.util.PathValidator;
+import org.filestorage.app.util.ResourceJsonStreamer;
+import org.filestorage.app.util.ResourcePath;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -28,11 +32,14 @@ import java.util.List;
 @RequestMapping("/api")
 public class DirectoryController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final MinioService minioService;
     private final PathValidator pathValidator;
     private final ResourceDataResponseMapper resourceDataResponseMapper;
+    private final ResourceJsonStreamer resourceJsonStreamer;
 
-    @Operation
+    @Operation(description = "Без limit и cursor возвращает всю папку списком. С limit возвращает страницу items и nextCursor для запроса следующей страницы (null на последней). С stream=json или stream=ndjson вся папка отдаётся потоком по мере чтения из индекса")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Возвращает путь, имя, тип ресурса"),
             @ApiResponse(responseCode = "400", description = "Ошибки валидации"),
@@ -41,12 +48,40 @@ public class DirectoryController {
             @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
     })
     @GetMapping("/directory")
-    public ResponseEntity<List<ResourceResponse>> getDirectory(@RequestParam String path, @AuthenticationPrincipal User user) {
-        path = PathNormalizer.normalize(path);
-        pathValidator.pathValidation(path);
-        pathValidator.prefixValidation(path, user.getId());
+    public ResponseEntity<?> getDirectory(@RequestParam String path,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) String stream,
+                                          @AuthenticationPrincipal User user) {
+        ResourcePath resourcePath = ResourcePath.parse(path);
+        pathValidator.prefixValidation(resourcePath, user.getId());
+
+        if(stream != null){
+            ResourceJsonStreamer.Format format = ResourceJsonStreamer.Format.parse(stream);
+
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .contentType(format.mediaType())
+                    .body(resourceJsonStreamer.stream(format, action -> minioService.forEachResource(resourcePath, user.getId(), action)));
+        }
+
+        if(limit != null || cursor != null){
+            int pageSize = limit != null ? limit : MAX_PAGE_SIZE;
+            if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+                throw new QueryNotValidException("Limit should be between 1 and " + MAX_PAGE_SIZE);
+            }
+
+            ResourcePage page = minioService.getResourcePage(resourcePath, user.getId(), cursor, pageSize);
+            List<ResourceResponse> items = page.resources().stream()
+                    .map(resourceDataResponseMapper::toResponse)
+                    .toList();
+
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(new DirectoryPageResponse(items, page.nextCursor()));
+        }
 
-        List<MinioResource> resources = minioService.getResources(path, user.getId());
+        List<MinioResource> resources = minioService.getResources(resourcePath, user.getId());
 
         List<ResourceResponse> resultList = resources.stream()
                 .map(resourceDataResponseMapper::toResponse)
@@ -68,11 +103,10 @@ public class DirectoryController {
     })
     @PostMapping("/directory")
     public ResponseEntity<ResourceResponse> postDirectory(@RequestParam String path, @AuthenticationPrincipal User user) {
-        path = PathNormalizer.normalize(path);
-        pathValidator.pathValidation(path);
+        ResourcePath resourcePath = ResourcePath.parse(path);
 
-        minioService.createDirectory(path, user.getId());
-        MinioResource resource = minioService.getResource(path, user.getId());
+        minioService.createDirectory(resourcePath, user.getId());
+        MinioResource resource = minioService.getResource(resourcePath, user.getId());
         ResourceResponse resourceResponse = resourceDataResponseMapper.toResponse(resource);
 
         return ResponseEntity
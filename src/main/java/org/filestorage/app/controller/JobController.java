@@ -0,0 +1,87 @@
+package org.filestorage.app.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.dto.JobResponse;
+import org.filestorage.app.mapper.JobMapper;
+import org.filestorage.app.model.User;
+import org.filestorage.app.service.JobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api")
+public class JobController {
+
+    private final JobService jobService;
+    private final JobMapper jobMapper;
+
+    @Operation(summary = "Список фоновых задач", description = "Возвращает последние 50 задач пользователя")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Успех"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @GetMapping("/jobs")
+    public ResponseEntity<List<JobResponse>> getJobs(@AuthenticationPrincipal User user) {
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(jobService.list(user.getId()).stream().map(jobMapper::toResponse).toList());
+    }
+
+    @Operation(summary = "Статус фоновой задачи", description = "Возвращает тип, статус, пути и количество обработанных файлов задачи")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Задача найдена"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Задача не найдена"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<JobResponse> getJob(@PathVariable UUID id, @AuthenticationPrincipal User user) {
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(jobMapper.toResponse(jobService.get(id, user.getId())));
+    }
+
+    @Operation(summary = "Отмена фоновой задачи", description = "Ожидающая задача отменяется сразу, выполняющаяся - после текущей пачки. Возвращает задачу")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Отмена запрошена"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Задача не найдена"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @PostMapping("/jobs/{id}/cancel")
+    public ResponseEntity<JobResponse> cancelJob(@PathVariable UUID id, @AuthenticationPrincipal User user) {
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(jobMapper.toResponse(jobService.cancel(id, user.getId())));
+    }
+
+    @Operation(summary = "Результат фоновой задачи", description = "Возвращает ZIP-архив, собранный задачей, с Content-Type: application/octet-stream")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Скачивание результата"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Задача не найдена или не завершена"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @GetMapping("/jobs/{id}/result")
+    public ResponseEntity<StreamingResponseBody> getJobResult(@PathVariable UUID id, @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(jobService.result(id, user.getId()));
+    }
+}
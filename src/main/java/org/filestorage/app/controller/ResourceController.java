@@ -3,14 +3,31 @@ package org.filestorage.app.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.filestorage.app.dto.JobResponse;
 import org.filestorage.app.dto.ResourceResponse;
+import org.filestorage.app.mapper.JobMapper;
+import org.filestorage.app.exception.PathNotValidException;
+import org.filestorage.app.exception.QueryNotValidException;
+import org.filestorage.app.exception.ResourceAlreadyExistException;
+import org.filestorage.app.model.FileDescriptor;
+import org.filestorage.app.model.Job;
 import org.filestorage.app.mapper.ResourceDataResponseMapper;
 import org.filestorage.app.model.MinioResource;
+import org.filestorage.app.model.UploadResult;
 import org.filestorage.app.model.User;
+import org.filestorage.app.service.BlobService;
+import org.filestorage.app.service.DownloadCompressionService;
+import org.filestorage.app.service.JobService;
 import org.filestorage.app.service.MinioService;
-import org.filestorage.app.util.PathNormalizer;
+import org.filestorage.app.util.ContentEncoding;
+import org.filestorage.app.util.JobType;
 import org.filestorage.app.util.PathValidator;
+import org.filestorage.app.util.ResourcePath;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -19,11 +36,16 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -34,6 +56,9 @@ public class ResourceController {
     private final MinioService minioService;
     private final ResourceDataResponseMapper resourceDataResponseMapper;
     private final PathValidator pathValidator;
+    private final JobService jobService;
+    private final JobMapper jobMapper;
+    private final DownloadCompressionService downloadCompressionService;
 
     @Operation(summary = "Получение информации о ресурсе", description = "Возвращает путь, имя, размер(для файла), тип ресурса")
     @ApiResponses(value = {
@@ -45,11 +70,10 @@ public class ResourceController {
     })
     @GetMapping("/resource")
     public ResponseEntity<ResourceResponse> getResourceData(@RequestParam String path, @AuthenticationPrincipal User user){
-        path = PathNormalizer.normalize(path);
-        pathValidator.pathValidation(path);
-        pathValidator.prefixValidation(path, user.getId());
+        ResourcePath resourcePath = ResourcePath.parse(path);
+        pathValidator.prefixValidation(resourcePath, user.getId());
 
-        MinioResource minioResource = minioService.getResource(path, user.getId());
+        MinioResource minioResource = minioService.getResource(resourcePath, user.getId());
         ResourceResponse resourceResponse = resourceDataResponseMapper.toResponse(minioResource);
 
         return ResponseEntity
@@ -57,51 +81,150 @@ public class ResourceController {
                 .body(resourceResponse);
     }
 
-    @Operation(summary = "Удаление ресурса", description = "Возвращает ответ с пустым телом. Код 204")
+    @Operation(summary = "Удаление ресурса", description = "Возвращает ответ с пустым телом. Код 204. С async=true удаление выполняется в фоне: код 202 и задача, статус которой доступен по ссылке из Location")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Ресурс найден и удален"),
+            @ApiResponse(responseCode = "202", description = "Удаление запущено в фоне"),
             @ApiResponse(responseCode = "400", description = "Ошибка валидации"),
             @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
             @ApiResponse(responseCode = "404", description = "Ресурс не найден"),
             @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
     })
     @DeleteMapping("/resource")
-    public ResponseEntity<ResourceResponse> deleteResource(@RequestParam String path, @AuthenticationPrincipal User user){
-        path = PathNormalizer.normalize(path);
-        pathValidator.pathValidation(path);
-        pathValidator.prefixValidation(path, user.getId());
+    public ResponseEntity<?> deleteResource(@RequestParam String path,
+                                            @RequestParam(defaultValue = "false") boolean async,
+                                            @AuthenticationPrincipal User user){
+        ResourcePath resourcePath = ResourcePath.parse(path);
+        pathValidator.prefixValidation(resourcePath, user.getId());
 
-        minioService.deleteResource(path, user.getId());
+        if(async){
+            return accepted(jobService.submit(JobType.DELETE, resourcePath, null, user.getId()));
+        }
+
+        minioService.deleteResource(resourcePath, user.getId());
 
         return ResponseEntity
                 .noContent()
                 .build();
     }
 
-    @Operation(summary = "Скачивание ресурса", description = "Возвращает бинарное содержимое с Content-Type: application/octet-stream")
+    @Operation(summary = "Скачивание ресурса", description = "Возвращает бинарное содержимое с Content-Type: application/octet-stream. Для файлов поддерживаются Range, If-Range, If-None-Match и If-Modified-Since. Текстовые файлы от download.compression.min-size сжимаются gzip или zstd по Accept-Encoding (кроме запросов с Range). С async=true архив папки собирается в фоне: код 202 и задача, результат которой доступен через api/jobs/{id}/result")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Ресурс найден. Скачивание"),
+            @ApiResponse(responseCode = "202", description = "Сборка архива запущена в фоне"),
+            @ApiResponse(responseCode = "206", description = "Скачивание запрошенного диапазона"),
+            @ApiResponse(responseCode = "304", description = "Ресурс не изменился"),
+            @ApiResponse(responseCode = "416", description = "Диапазон вне размера файла"),
             @ApiResponse(responseCode = "400", description = "Ошибка валидации"),
             @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
             @ApiResponse(responseCode = "404", description = "Ресурс не найден"),
             @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
     })
     @GetMapping("/resource/download")
-    public ResponseEntity<StreamingResponseBody> downloadResource(@RequestParam String path, @AuthenticationPrincipal User user){
-        path = PathNormalizer.normalize(path);
-        pathValidator.pathValidation(path);
-        pathValidator.prefixValidation(path, user.getId());
+    public ResponseEntity<?> downloadResource(@RequestParam String path,
+                                              @RequestParam(defaultValue = "false") boolean async,
+                                              @RequestHeader HttpHeaders headers,
+                                              @AuthenticationPrincipal User user){
+        ResourcePath resourcePath = ResourcePath.parse(path);
+        pathValidator.prefixValidation(resourcePath, user.getId());
 
-        StreamingResponseBody streamResponse = minioService.downloadResource(path, user.getId());
+        if(resourcePath.isDirectory() && async){
+            return accepted(jobService.submit(JobType.ARCHIVE, resourcePath, null, user.getId()));
+        }
 
-        return ResponseEntity.ok()
+        if(resourcePath.isDirectory()){
+            StreamingResponseBody streamResponse = minioService.downloadResource(resourcePath, user.getId());
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(streamResponse);
+        }
+
+        FileDescriptor file = minioService.describeFile(resourcePath, user.getId());
+        String etag = "\"" + file.getEtag() + "\"";
+
+        if(isNotModified(headers, etag, file.getLastModified())){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .lastModified(file.getLastModified())
+                    .build();
+        }
+
+        HttpRange range = selectRange(headers, etag, file.getLastModified());
+
+        ContentEncoding encoding = range == null
+                ? downloadCompressionService.select(headers.getFirst(HttpHeaders.ACCEPT_ENCODING), resourcePath.name(), file.getSize())
+                : null;
+
+        if(encoding != null){
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .eTag("\"" + file.getEtag() + "-" + encoding.token() + "\"")
+                    .lastModified(file.getLastModified())
+                    .header(HttpHeaders.CONTENT_ENCODING, encoding.token())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .body(downloadCompressionService.compress(
+                            minioService.downloadFile(file, 0, null), encoding));
+        }
+
+        if(range == null){
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(file.getSize())
+                    .eTag(etag)
+                    .lastModified(file.getLastModified())
+                    .varyBy(downloadCompressionService.isEnabled() ? new String[]{HttpHeaders.ACCEPT_ENCODING} : new String[0])
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .body(minioService.downloadFile(file, 0, null));
+        }
+
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(file.getSize());
+            end = range.getRangeEnd(file.getSize());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + file.getSize())
+                    .build();
+        }
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(streamResponse);
+                .contentLength(end - start + 1)
+                .eTag(etag)
+                .lastModified(file.getLastModified())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + file.getSize())
+                .body(minioService.downloadFile(file, start, end - start + 1));
     }
 
-    @Operation(summary = "Перемещение или переименование ресурса", description = "Возвращает путь, имя, размер(для файла), тип ресурса")
+    @Operation(summary = "Превью изображения", description = "Возвращает уменьшенную копию изображения в формате JPEG, если она уже сгенерирована")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Превью найдено"),
+            @ApiResponse(responseCode = "400", description = "Ошибка валидации"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Ресурс или превью не найдены"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @GetMapping("/resource/preview")
+    public ResponseEntity<StreamingResponseBody> downloadPreview(@RequestParam String path, @AuthenticationPrincipal User user){
+        ResourcePath resourcePath = ResourcePath.parse(path);
+        pathValidator.prefixValidation(resourcePath, user.getId());
+
+        if(resourcePath.isDirectory()){
+            throw new PathNotValidException("Preview is available only for files");
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .body(minioService.downloadPreview(resourcePath, user.getId()));
+    }
+
+    @Operation(summary = "Перемещение или переименование ресурса", description = "Возвращает путь, имя, размер(для файла), тип ресурса. С async=true перемещение выполняется в фоне: код 202 и задача")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Ресурс перемещен/переименован"),
+            @ApiResponse(responseCode = "202", description = "Перемещение запущено в фоне"),
             @ApiResponse(responseCode = "400", description = "Ошибки валидации"),
             @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
             @ApiResponse(responseCode = "404", description = "Ресурс не найден"),
@@ -109,15 +232,26 @@ public class ResourceController {
             @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
     })
     @GetMapping("/resource/move")
-    public ResponseEntity<ResourceResponse> moveResource(@RequestParam String from, @RequestParam String to, @AuthenticationPrincipal User user){
-        from = PathNormalizer.normalize(from);
-        to = PathNormalizer.normalize(to);
-        pathValidator.pathValidation(from);
-        pathValidator.pathValidation(to);
-        pathValidator.prefixValidation(from, user.getId());
-
-        minioService.moveResource(from, to, user.getId());
-        MinioResource minioResource = minioService.getResource(to, user.getId());
+    public ResponseEntity<?> moveResource(@RequestParam String from,
+                                          @RequestParam String to,
+                                          @RequestParam(defaultValue = "false") boolean async,
+                                          @AuthenticationPrincipal User user){
+        ResourcePath fromPath = ResourcePath.parse(from);
+        ResourcePath toPath = ResourcePath.parse(to);
+        pathValidator.prefixValidation(fromPath, user.getId());
+
+        if(async){
+            if(fromPath.contains(toPath)){
+                throw new PathNotValidException("Directory " + fromPath + " can not be moved into itself");
+            }
+            if(minioService.exists(toPath, user.getId())){
+                throw new ResourceAlreadyExistException("Resource already exists");
+            }
+            return accepted(jobService.submit(JobType.MOVE, fromPath, toPath, user.getId()));
+        }
+
+        minioService.moveResource(fromPath, toPath, user.getId());
+        MinioResource minioResource = minioService.getResource(toPath, user.getId());
         ResourceResponse resourceResponse = resourceDataResponseMapper.toResponse(minioResource);
 
         return ResponseEntity
@@ -125,9 +259,10 @@ public class ResourceController {
                 .body(resourceResponse);
     }
 
-    @Operation(summary = "Загрузка ресурса", description = "Возвращает коллекцию ресурсов в формате путь, имя, размер, тип")
+    @Operation(summary = "Загрузка ресурса", description = "Файлы загружаются параллельно. Возвращает коллекцию загруженных ресурсов в формате путь, имя, размер, тип; для незагруженных - сообщение об ошибке")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Ресурс загружен"),
+            @ApiResponse(responseCode = "207", description = "Часть файлов не загружена"),
             @ApiResponse(responseCode = "400", description = "Ошибки валидации"),
             @ApiResponse(responseCode = "409", description = "Такой ресурс уже содержится по данному пути"),
             @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
@@ -136,10 +271,36 @@ public class ResourceController {
     @PostMapping("/resource")
     public ResponseEntity<List<ResourceResponse>> uploadResource(@RequestParam String path, @RequestParam MultipartFile[] object, @AuthenticationPrincipal User user) {
 
-        path = PathNormalizer.normalize(path);
-        pathValidator.pathValidation(path);
+        ResourcePath resourcePath = ResourcePath.parse(path);
+
+        List<UploadResult> results = minioService.uploadResource(resourcePath, user.getId(), object);
+
+        List<ResourceResponse> resultList = results.stream()
+                .map(resourceDataResponseMapper::toResponse)
+                .toList();
 
-        minioService.uploadResource(path, user.getId(), object);
+        boolean allUploaded = results.stream().allMatch(UploadResult::isSuccess);
+
+        return ResponseEntity
+                .status(allUploaded ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                .body(resultList);
+    }
+
+    @Operation(summary = "Потоковая загрузка ресурса", description = "Части multipart-запроса передаются в MinIO по мере чтения, без буферизации. Возвращает коллекцию ресурсов в формате путь, имя, размер, тип")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Ресурс загружен"),
+            @ApiResponse(responseCode = "400", description = "Ошибки валидации"),
+            @ApiResponse(responseCode = "409", description = "Такой ресурс уже содержится по данному пути"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @PostMapping(value = "/resource/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<ResourceResponse>> uploadResourceStream(HttpServletRequest request, @AuthenticationPrincipal User user) throws IOException {
+
+        // request.getParameter() would make the container parse the whole multipart body, so path is read from the raw query
+        ResourcePath path = ResourcePath.parse(ServletUriComponentsBuilder.fromRequest(request).build().getQueryParams().getFirst("path"));
+
+        minioService.uploadResourceStream(path, user.getId(), new JakartaServletFileUpload<>().getItemIterator(request));
         List<MinioResource> uploadedResources = minioService.getResources(path, user.getId());
 
         List<ResourceResponse> resultList = uploadedResources.stream()
@@ -151,4 +312,87 @@ public class ResourceController {
                 .body(resultList);
     }
 
+    @Operation(summary = "Создание файла по хэшу содержимого", description = "Если у пользователя уже есть файл с таким SHA-256 и размером, новый файл создается без загрузки. Возвращает путь, имя, размер, тип")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Файл создан"),
+            @ApiResponse(responseCode = "400", description = "Ошибки валидации"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "У пользователя нет файла с таким хэшем, файл нужно загрузить"),
+            @ApiResponse(responseCode = "409", description = "Такой ресурс уже содержится по данному пути"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @PostMapping("/resource/link")
+    public ResponseEntity<ResourceResponse> linkResource(@RequestParam String path, @RequestParam String sha256, @RequestParam Long size, @AuthenticationPrincipal User user) {
+        ResourcePath resourcePath = ResourcePath.parse(path);
+
+        if(resourcePath.isDirectory()){
+            throw new PathNotValidException("Path should point to a file");
+        }
+
+        if(!BlobService.isValidHash(sha256)){
+            throw new QueryNotValidException("Hash should be a lowercase hex SHA-256");
+        }
+
+        MinioResource minioResource = minioService.link(resourcePath, user.getId(), sha256, size);
+
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(resourceDataResponseMapper.toResponse(minioResource));
+    }
+
+    private boolean isNotModified(HttpHeaders headers, String etag, Instant lastModified){
+        List<String> ifNoneMatch = headers.getIfNoneMatch();
+
+        if(!ifNoneMatch.isEmpty()){
+            return ifNoneMatch.stream()
+                    .anyMatch(tag -> tag.equals("*") || identityTag(tag).equals(etag));
+        }
+
+        long ifModifiedSince = headers.getIfModifiedSince();
+        return ifModifiedSince != -1 && lastModified.getEpochSecond() * 1000 <= ifModifiedSince;
+    }
+
+    /**
+     * Compressed downloads carry the encoding in the etag, they still match the file they were made from.
+     */
+    static String identityTag(String tag){
+        return tag.replaceFirst("^W/", "").replaceFirst("-(gzip|zstd)\"$", "\"");
+    }
+
+    private HttpRange selectRange(HttpHeaders headers, String etag, Instant lastModified){
+        List<HttpRange> ranges;
+        try {
+            ranges = headers.getRange();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        if(ranges.size() != 1){
+            return null;
+        }
+
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+
+        if(ifRange != null && !ifRange.equals(etag)){
+            if(ifRange.startsWith("\"") || ifRange.startsWith("W/")){
+                return null;
+            }
+            try {
+                if(headers.getFirstDate(HttpHeaders.IF_RANGE) != lastModified.getEpochSecond() * 1000){
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        return ranges.get(0);
+    }
+
+    private ResponseEntity<JobResponse> accepted(Job job){
+        return ResponseEntity
+                .accepted()
+                .location(URI.create("/api/jobs/" + job.getId()))
+                .body(jobMapper.toResponse(job));
+    }
 }
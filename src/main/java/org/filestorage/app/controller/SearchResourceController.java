@@ -8,7 +8,10 @@ import org.filestorage.app.dto.ResourceResponse;
 import org.filestorage.app.mapper.ResourceDataResponseMapper;
 import org.filestorage.app.model.MinioResource;
 import org.filestorage.app.model.User;
-import org.filestorage.app.service.MinioService;
+import org.filestorage.app.service.SearchService;
+import org.filestorage.app.util.ResourceJsonStreamer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,10 +26,11 @@ import static org.filestorage.app.util.QueryValidator.validate;
 @RequestMapping("/api/resource")
 public class SearchResourceController {
 
-    private final MinioService minioService;
+    private final SearchService searchService;
     private final ResourceDataResponseMapper resourceDataResponseMapper;
+    private final ResourceJsonStreamer resourceJsonStreamer;
 
-    @Operation
+    @Operation(description = "С stream=json или stream=ndjson результаты отдаются потоком по мере чтения, без сборки списка в памяти")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Возвращает List ресурсов в формате имя, путь, размер, тип"),
             @ApiResponse(responseCode = "400", description = "Ошибки валидации"),
@@ -34,16 +38,29 @@ public class SearchResourceController {
             @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
     })
     @GetMapping("/search")
-    public List<ResourceResponse> searchResource(@RequestParam String query, @AuthenticationPrincipal User user) {
+    public ResponseEntity<?> searchResource(@RequestParam String query,
+                                            @RequestParam(required = false) String stream,
+                                            @AuthenticationPrincipal User user) {
         validate(query);
 
-        List<MinioResource> resources = minioService.getResourcesByUser(user.getId(), query);
+        if(stream != null){
+            ResourceJsonStreamer.Format format = ResourceJsonStreamer.Format.parse(stream);
+
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .contentType(format.mediaType())
+                    .body(resourceJsonStreamer.stream(format, action -> searchService.forEachResult(user.getId(), query, action)));
+        }
+
+        List<MinioResource> resources = searchService.search(user.getId(), query);
 
         List<ResourceResponse> resultList = resources.stream()
                 .map(resourceDataResponseMapper::toResponse)
                 .toList();
 
-        return resultList;
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(resultList);
     }
 
 }
@@ -0,0 +1,117 @@
+package org.filestorage.app.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.dto.ResourceResponse;
+import org.filestorage.app.dto.UploadSessionResponse;
+import org.filestorage.app.mapper.ResourceDataResponseMapper;
+import org.filestorage.app.model.MinioResource;
+import org.filestorage.app.model.User;
+import org.filestorage.app.service.UploadSessionService;
+import org.filestorage.app.util.ResourcePath;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/upload")
+public class UploadController {
+
+    private final UploadSessionService uploadSessionService;
+    private final ResourceDataResponseMapper resourceDataResponseMapper;
+
+    @Operation(summary = "Создание сессии возобновляемой загрузки", description = "Возвращает идентификатор сессии, размер чанка и полученные чанки")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Сессия создана"),
+            @ApiResponse(responseCode = "400", description = "Ошибки валидации"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "409", description = "Такой ресурс уже содержится по данному пути"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> createSession(@RequestParam String path, @RequestParam String name, @RequestParam Long size, @AuthenticationPrincipal User user) {
+        ResourcePath resourcePath = ResourcePath.parse(path).resolve(name);
+
+        UploadSessionResponse session = uploadSessionService.create(resourcePath, size, user.getId());
+
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(session);
+    }
+
+    @Operation(summary = "Состояние сессии загрузки", description = "Возвращает смещение и номера полученных чанков")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Сессия найдена"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Сессия не найдена"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionResponse> getSession(@PathVariable String id, @AuthenticationPrincipal User user) {
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(uploadSessionService.get(id, user.getId()));
+    }
+
+    @Operation(summary = "Загрузка чанка", description = "Тело запроса - бинарное содержимое чанка. Возвращает состояние сессии")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Чанк сохранен"),
+            @ApiResponse(responseCode = "400", description = "Неверный номер или размер чанка"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Сессия не найдена"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @PutMapping("/{id}/chunks/{number}")
+    public ResponseEntity<UploadSessionResponse> uploadChunk(@PathVariable String id, @PathVariable int number, HttpServletRequest request, @AuthenticationPrincipal User user) throws IOException {
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(uploadSessionService.uploadChunk(id, number, request.getInputStream(), user.getId()));
+    }
+
+    @Operation(summary = "Завершение загрузки", description = "Собирает чанки в файл. Возвращает путь, имя, размер, тип ресурса")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Ресурс загружен"),
+            @ApiResponse(responseCode = "400", description = "Получены не все чанки"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Сессия не найдена"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<ResourceResponse> completeSession(@PathVariable String id, @AuthenticationPrincipal User user) {
+        MinioResource resource = uploadSessionService.complete(id, user.getId());
+
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(resourceDataResponseMapper.toResponse(resource));
+    }
+
+    @Operation(summary = "Отмена загрузки", description = "Возвращает ответ с пустым телом. Код 204")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Сессия отменена"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Сессия не найдена"),
+            @ApiResponse(responseCode = "500", description = "Неизвестная ошибка")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abortSession(@PathVariable String id, @AuthenticationPrincipal User user) {
+        uploadSessionService.abort(id, user.getId());
+
+        return ResponseEntity
+                .noContent()
+                .build();
+    }
+}
@@ -6,11 +6,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.filestorage.app.dto.StorageUsageResponse;
 import org.filestorage.app.exception.UserNotAuthorizedException;
+import org.filestorage.app.model.User;
+import org.filestorage.app.service.StorageUsageService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,6 +27,8 @@ import java.util.Map;
 @RequestMapping("/api/user")
 public class UserController {
 
+    private final StorageUsageService storageUsageService;
+
     @Operation(summary = "Информация о пользователе", description = "Возвращает username пользователя")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Успех"),
@@ -43,4 +49,16 @@ public class UserController {
                 .status(HttpStatus.OK)
                 .body(Map.of("message", username));
     }
+
+    @Operation(summary = "Использование хранилища", description = "Возвращает занятый объем в байтах, количество ресурсов и квоты пользователя (null, если квота не задана)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Успех"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован")
+    })
+    @GetMapping("/usage")
+    public ResponseEntity<StorageUsageResponse> getUsage(@AuthenticationPrincipal User user) {
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(storageUsageService.getUsage(user.getId()));
+    }
 }
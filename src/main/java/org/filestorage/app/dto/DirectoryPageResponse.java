@@ -0,0 +1,17 @@
+package org.filestorage.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class DirectoryPageResponse {
+    private List<ResourceResponse> items;
+    private String nextCursor;
+}
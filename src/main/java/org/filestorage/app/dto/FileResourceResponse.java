@@ -11,4 +11,6 @@ public class FileResourceResponse extends ResourceResponse {
 
     private Long size;
 
+    private boolean hasPreview;
+
 }
@@ -0,0 +1,25 @@
+package org.filestorage.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class JobResponse {
+    private UUID id;
+    private String type;
+    private String status;
+    private String path;
+    private String target;
+    private Long processed;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
@@ -0,0 +1,17 @@
+package org.filestorage.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class StorageUsageResponse {
+    private Long usedBytes;
+    private Long objects;
+    private Long maxBytes;
+    private Long maxObjects;
+}
@@ -0,0 +1,14 @@
+package org.filestorage.app.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.Setter;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Getter
+@Setter
+public class UploadErrorResponse extends ResourceResponse {
+
+    private String message;
+
+}
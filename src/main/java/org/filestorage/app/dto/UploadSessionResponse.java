@@ -0,0 +1,22 @@
+package org.filestorage.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class UploadSessionResponse {
+    private String id;
+    private String path;
+    private String name;
+    private Long size;
+    private Long chunkSize;
+    private Long offset;
+    private List<Integer> uploadedChunks;
+}
@@ -0,0 +1,7 @@
+package org.filestorage.app.exception;
+
+public class ChunkNotValidException extends RuntimeException {
+    public ChunkNotValidException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.filestorage.app.exception;
+
+public class QuotaExceededException extends RuntimeException {
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package org.filestorage.app.mapper;
+
+import org.filestorage.app.dto.JobResponse;
+import org.filestorage.app.model.Job;
+import org.mapstruct.Mapper;
+
+@Mapper(componentModel = "spring")
+public interface JobMapper {
+
+    JobResponse toResponse(Job job);
+
+}
@@ -3,7 +3,9 @@ package org.filestorage.app.mapper;
 import org.filestorage.app.dto.DirectoryResourceResponse;
 import org.filestorage.app.dto.FileResourceResponse;
 import org.filestorage.app.dto.ResourceResponse;
+import org.filestorage.app.dto.UploadErrorResponse;
 import org.filestorage.app.model.MinioResource;
+import org.filestorage.app.model.UploadResult;
 import org.filestorage.app.util.ResourceType;
 import org.mapstruct.Mapper;
 
@@ -17,6 +19,7 @@ public interface ResourceDataResponseMapper {
             response.setPath(resource.getPath());
             response.setName(resource.getName());
             response.setSize(resource.getSize());
+            response.setHasPreview(resource.isHasPreview());
             response.setType(String.valueOf(resource.getType()));
             return response;
         } else {
@@ -28,4 +31,17 @@ public interface ResourceDataResponseMapper {
         }
     }
 
+    default ResourceResponse toResponse(UploadResult result){
+        if(result.isSuccess()){
+            return toResponse(result.getResource());
+        }
+
+        UploadErrorResponse response = new UploadErrorResponse();
+        response.setPath(result.getPath());
+        response.setName(result.getName());
+        response.setType(String.valueOf(ResourceType.FILE));
+        response.setMessage(result.getError().getMessage());
+        return response;
+    }
+
 }
@@ -0,0 +1,4 @@
+package org.filestorage.app.model;
+
+public record ArchiveEntry(String name, String objectKey, long size) {
+}
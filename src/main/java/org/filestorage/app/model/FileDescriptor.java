@@ -0,0 +1,24 @@
+package org.filestorage.app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class FileDescriptor {
+
+    private String etag;
+
+    private Instant lastModified;
+
+    private Long size;
+
+    private String objectKey;
+
+}
@@ -21,4 +21,6 @@ public class MinioResource {
 
     private ResourceType type;
 
+    private boolean hasPreview;
+
 }
@@ -0,0 +1,6 @@
+package org.filestorage.app.model;
+
+import java.util.List;
+
+public record ResourcePage(List<MinioResource> resources, String nextCursor) {
+}
@@ -0,0 +1,26 @@
+package org.filestorage.app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class UploadResult {
+
+    private String path;
+
+    private String name;
+
+    private MinioResource resource;
+
+    private RuntimeException error;
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+}
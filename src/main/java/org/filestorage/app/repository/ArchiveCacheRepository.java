@@ -0,0 +1,46 @@
+package org.filestorage.app.repository;
+
+import org.filestorage.app.model.ArchiveCache;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ArchiveCacheRepository extends JpaRepository<ArchiveCache, String> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE {h-schema}archive_cache SET last_access = now() WHERE fingerprint = :fingerprint", nativeQuery = true)
+    int touch(@Param("fingerprint") String fingerprint);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO {h-schema}archive_cache (fingerprint, size)
+            VALUES (:fingerprint, :size)
+            ON CONFLICT (fingerprint) DO UPDATE SET last_access = now()
+            """, nativeQuery = true)
+    void insert(@Param("fingerprint") String fingerprint, @Param("size") long size);
+
+    /**
+     * Least recently used entries that do not fit into the budget.
+     */
+    @Query(value = """
+            SELECT fingerprint, size, created_at, last_access FROM (
+                SELECT *, SUM(size) OVER (ORDER BY last_access DESC, fingerprint) AS total
+                FROM {h-schema}archive_cache
+            ) ranked
+            WHERE total > :maxSize
+            """, nativeQuery = true)
+    List<ArchiveCache> findOverBudget(@Param("maxSize") long maxSize);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM {h-schema}archive_cache WHERE fingerprint IN (:fingerprints)", nativeQuery = true)
+    void deleteByFingerprints(@Param("fingerprints") List<String> fingerprints);
+}
@@ -0,0 +1,31 @@
+package org.filestorage.app.repository;
+
+import org.filestorage.app.model.Blob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtextextended(:hash, 0))) l", nativeQuery = true)
+    Integer lock(@Param("hash") String hash);
+
+    @Modifying
+    @Query(value = "UPDATE {h-schema}blobs SET ref_count = ref_count + 1 WHERE hash = :hash AND size = :size", nativeQuery = true)
+    int acquire(@Param("hash") String hash, @Param("size") long size);
+
+    @Modifying
+    @Query(value = "INSERT INTO {h-schema}blobs (hash, size, ref_count) VALUES (:hash, :size, 1)", nativeQuery = true)
+    void insert(@Param("hash") String hash, @Param("size") long size);
+
+    @Modifying
+    @Query(value = "UPDATE {h-schema}blobs SET ref_count = ref_count - 1 WHERE hash = :hash", nativeQuery = true)
+    void release(@Param("hash") String hash);
+
+    @Modifying
+    @Query(value = "DELETE FROM {h-schema}blobs WHERE hash = :hash AND ref_count <= 0", nativeQuery = true)
+    int deleteUnreferenced(@Param("hash") String hash);
+}
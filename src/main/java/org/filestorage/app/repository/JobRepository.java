@@ -0,0 +1,85 @@
+package org.filestorage.app.repository;
+
+import org.filestorage.app.model.Job;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface JobRepository extends JpaRepository<Job, UUID> {
+
+    Optional<Job> findByIdAndUserId(UUID id, Long userId);
+
+    List<Job> findTop50ByUserIdOrderByCreatedAtDesc(Long userId);
+
+    /**
+     * Leases up to limit jobs that are waiting or were left running by a worker whose lease expired.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE {h-schema}jobs
+            SET status = 'RUNNING', attempts = attempts + 1,
+                locked_until = now() + make_interval(secs => :leaseSeconds), updated_at = now()
+            WHERE id IN (
+                SELECT id FROM {h-schema}jobs
+                WHERE status IN ('PENDING', 'RUNNING') AND (locked_until IS NULL OR locked_until < now())
+                ORDER BY created_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING *
+            """, nativeQuery = true)
+    List<Job> claim(@Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Records progress and extends the lease, returns 0 once the job has been cancelled.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE {h-schema}jobs
+            SET processed = :processed, locked_until = now() + make_interval(secs => :leaseSeconds), updated_at = now()
+            WHERE id = :id AND NOT cancel_requested
+            """, nativeQuery = true)
+    int heartbeat(@Param("id") UUID id, @Param("processed") long processed, @Param("leaseSeconds") long leaseSeconds);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE {h-schema}jobs
+            SET status = :status, error = CAST(:error AS TEXT), result = CAST(:result AS TEXT),
+                processed = COALESCE(CAST(:processed AS BIGINT), processed), locked_until = NULL, updated_at = now()
+            WHERE id = :id
+            """, nativeQuery = true)
+    void finish(@Param("id") UUID id,
+                @Param("status") String status,
+                @Param("error") String error,
+                @Param("result") String result,
+                @Param("processed") Long processed);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE {h-schema}jobs
+            SET cancel_requested = TRUE,
+                status = CASE WHEN status = 'PENDING' THEN 'CANCELLED' ELSE status END,
+                updated_at = now()
+            WHERE id = :id AND user_id = :userId AND status IN ('PENDING', 'RUNNING')
+            """, nativeQuery = true)
+    void cancel(@Param("id") UUID id, @Param("userId") Long userId);
+
+    @Query(value = """
+            SELECT * FROM {h-schema}jobs
+            WHERE status IN ('COMPLETED', 'FAILED', 'CANCELLED')
+              AND updated_at < now() - make_interval(secs => :retentionSeconds)
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Job> findExpired(@Param("retentionSeconds") long retentionSeconds, @Param("limit") int limit);
+}
@@ -1,104 +1,244 @@
 package org.filestorage.app.repository;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.ByteStreams;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
 import io.minio.messages.DeleteError;
 import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import io.minio.messages.ListMultipartUploadsResult;
+import io.minio.messages.Part;
+import io.minio.messages.Upload;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.filestorage.app.exception.MinioOperationException;
+import org.filestorage.app.util.MinioMetrics;
+import org.filestorage.app.util.StorageCodec;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 public class MinioRepository {
 
+    public static final int MAX_DELETE_BATCH = 1000;
+
     private final MinioClient minioClient;
+    private final MinioAsyncClient minioAsyncClient;
+    private final MeterRegistry meterRegistry;
+    private final MinioMetrics minioMetrics;
+    private final StorageCodec storageCodec;
 
     @Value("${minio.default.bucket}")
     private String defaultBucket;
 
+    @Value("${minio.upload.part-size}")
+    private DataSize partSize;
+
+    @Value("${minio.cache.ttl}")
+    private Duration cacheTtl;
+
+    @Value("${minio.cache.max-size}")
+    private long cacheMaxSize;
+
+    @Value("${minio.cache.list-max-items}")
+    private int cacheListMaxItems;
+
+    private Cache<String, StatObjectResponse> statCache;
+    private Cache<String, Boolean> existsCache;
+    private Cache<ListKey, List<Item>> listCache;
+
+    @PostConstruct
+    public void initCaches() {
+        statCache = CaffeineCacheMetrics.monitor(meterRegistry, buildCache(), "minio.stat");
+        existsCache = CaffeineCacheMetrics.monitor(meterRegistry, buildCache(), "minio.exists");
+        listCache = CaffeineCacheMetrics.monitor(meterRegistry, buildCache(), "minio.list");
+    }
+
     public GetObjectResponse getObject(String prefix) {
         try {
-            return minioClient.getObject(
+            return decoded(metered(minioMetrics.record("get", () -> minioClient.getObject(
                     GetObjectArgs.builder()
                             .bucket(defaultBucket)
                             .object(prefix)
                             .build()
-            );
+            ))));
         } catch (Exception e) {
             throw new MinioOperationException("Error getting object by prefix: " + prefix, e);
         }
     }
 
+    /**
+     * Reads a range of the object version with the given etag; fails if the object has changed since.
+     * Compressed objects can not be read by range, they are decoded from the start up to the requested range.
+     */
+    public GetObjectResponse getObject(String prefix, long offset, Long length, String etag) {
+        boolean encoded = StorageCodec.isEncoded(stat(prefix).headers());
+
+        GetObjectResponse object = null;
+        try {
+            object = metered(minioMetrics.record("get", () -> minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(defaultBucket)
+                            .object(prefix)
+                            .offset(encoded ? 0L : offset)
+                            .length(encoded ? null : length)
+                            .matchETag(etag)
+                            .build()
+            )));
+            if (!encoded) {
+                return object;
+            }
+            object = decoded(object);
+            object.skipNBytes(offset);
+        } catch (Exception e) {
+            if (object != null) {
+                closeQuietly(object);
+            }
+            throw new MinioOperationException("Error getting object range by prefix: " + prefix, e);
+        }
+
+        return length != null ? withBody(object, ByteStreams.limit(object, length)) : object;
+    }
+
     public StatObjectResponse stat(String prefix) {
+        StatObjectResponse cached = statCache.getIfPresent(prefix);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
-            return minioClient.statObject(
+            StatObjectResponse response = minioMetrics.record("stat", () -> minioClient.statObject(
                     StatObjectArgs.builder()
                             .bucket(defaultBucket)
                             .object(prefix)
                             .build()
-            );
+            ));
+            statCache.put(prefix, response);
+            return response;
         } catch (Exception e) {
             throw new MinioOperationException("Error stat object by prefix: " + prefix, e);
         }
     }
 
     public Iterable<Result<Item>> list(String prefix, boolean recursive) {
+        ListKey key = new ListKey(prefix, recursive);
+        List<Item> cached = listCache.getIfPresent(key);
+        if (cached != null) {
+            return cached.stream().map(Result::new).toList();
+        }
+
+        Iterator<Result<Item>> iterator;
+        List<Result<Item>> head = new ArrayList<>();
         try {
-            return minioClient.listObjects(
-                    ListObjectsArgs.builder()
-                            .bucket(defaultBucket)
-                            .prefix(prefix)
-                            .recursive(recursive)
-                            .build()
-            );
+            // Listing is lazy, so the timer covers the request that fills the first page
+            iterator = minioMetrics.record("list", () -> {
+                Iterator<Result<Item>> it = minioClient.listObjects(
+                        ListObjectsArgs.builder()
+                                .bucket(defaultBucket)
+                                .prefix(prefix)
+                                .recursive(recursive)
+                                .build()
+                ).iterator();
+                while (head.size() <= cacheListMaxItems && it.hasNext()) {
+                    head.add(it.next());
+                }
+                return it;
+            });
         } catch (Exception e) {
             throw new MinioOperationException("Error list objects by prefix: " + prefix, e);
         }
+
+        if (!iterator.hasNext() && head.size() <= cacheListMaxItems) {
+            List<Item> items = new ArrayList<>(head.size());
+            for (Result<Item> result : head) {
+                try {
+                    items.add(result.get());
+                } catch (Exception e) {
+                    return head;
+                }
+            }
+            listCache.put(key, items);
+            return head;
+        }
+
+        return () -> new Iterator<>() {
+            private final Iterator<Result<Item>> buffered = head.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return buffered.hasNext() || iterator.hasNext();
+            }
+
+            @Override
+            public Result<Item> next() {
+                return buffered.hasNext() ? buffered.next() : iterator.next();
+            }
+        };
     }
 
-    public void removeObjects(List<DeleteObject> objects) {
+    public void removeObjects(List<String> prefixes) {
+        List<DeleteObject> objects = prefixes.stream().map(DeleteObject::new).toList();
         try {
-            Iterable<Result<DeleteError>> results =
-                    minioClient.removeObjects(
-                            RemoveObjectsArgs.builder()
-                                    .bucket(defaultBucket)
-                                    .objects(objects)
-                                    .build()
-                    );
+            minioMetrics.record("remove-batch", () -> {
+                Iterable<Result<DeleteError>> results =
+                        minioClient.removeObjects(
+                                RemoveObjectsArgs.builder()
+                                        .bucket(defaultBucket)
+                                        .objects(objects)
+                                        .build()
+                        );
 
-            for (Result<DeleteError> result : results) {
-                DeleteError err = result.get();
-                if (err != null) {
-                    throw new MinioOperationException("MinIO delete error: " + err.objectName());
+                for (Result<DeleteError> result : results) {
+                    DeleteError err = result.get();
+                    if (err != null) {
+                        throw new MinioOperationException("MinIO delete error: " + err.objectName());
+                    }
                 }
-            }
-
+                return null;
+            });
         } catch (Exception e) {
             throw new MinioOperationException("Error deleting multiple objects", e);
+        } finally {
+            prefixes.forEach(this::invalidate);
         }
     }
 
     public void removeObject(String prefix) {
         try {
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
-                            .bucket(defaultBucket)
-                            .object(prefix)
-                            .build()
-            );
+            minioMetrics.record("remove", () -> {
+                minioClient.removeObject(
+                        RemoveObjectArgs.builder()
+                                .bucket(defaultBucket)
+                                .object(prefix)
+                                .build()
+                );
+                return null;
+            });
         } catch (Exception e) {
             throw new MinioOperationException("Error deleting object by prefix: " + prefix, e);
+        } finally {
+            invalidate(prefix);
         }
     }
 
-    public void copyObject(String target, String source){
+    public ObjectWriteResponse copyObject(String target, String source){
         try {
-            minioClient.copyObject(
+            return minioMetrics.record("copy", () -> minioClient.copyObject(
                     CopyObjectArgs.builder()
                             .bucket(defaultBucket)
                             .object(target)
@@ -109,30 +249,132 @@ public class MinioRepository {
                                             .build()
                             )
                             .build()
-            );
+            ));
         } catch (Exception e) {
             throw new MinioOperationException("Error copying object", e);
+        } finally {
+            invalidate(target);
         }
     }
 
-    public void putObject(String prefix, InputStream input, Long size){
+    public ObjectWriteResponse putObject(String prefix, InputStream input, Long size){
         try {
-            minioClient.putObject(
+            StorageCodec.Encoded encoded = storageCodec.encode(input, size);
+            return minioMetrics.record("put", () -> minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(defaultBucket)
                             .object(prefix)
-                            .stream(input, size, -1)
+                            .stream(minioMetrics.countUpload(encoded.stream()), encoded.size(), encoded.size() >= 0 ? -1 : partSize.toBytes())
+                            .userMetadata(encoded.metadata())
                             .build()
-            );
+            ));
         } catch (Exception e) {
             throw new MinioOperationException("Error uploading file by prefix: " + prefix, e);
+        } finally {
+            invalidate(prefix);
+        }
+    }
+
+    public ObjectWriteResponse putObjectStream(String prefix, InputStream input, long partSize){
+        try {
+            StorageCodec.Encoded encoded = storageCodec.encode(input, -1);
+            return minioMetrics.record("put-stream", () -> minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(defaultBucket)
+                            .object(prefix)
+                            .stream(minioMetrics.countUpload(encoded.stream()), -1, partSize)
+                            .userMetadata(encoded.metadata())
+                            .build()
+            ));
+        } catch (Exception e) {
+            throw new MinioOperationException("Error streaming file by prefix: " + prefix, e);
+        } finally {
+            invalidate(prefix);
+        }
+    }
+
+    public String createMultipartUpload(String prefix){
+        try {
+            return minioMetrics.record("multipart-create", () -> minioAsyncClient.createMultipartUploadAsync(defaultBucket, null, prefix, ImmutableMultimap.of(), ImmutableMultimap.of())
+                    .get()
+                    .result()
+                    .uploadId());
+        } catch (Exception e) {
+            throw new MinioOperationException("Error creating multipart upload by prefix: " + prefix, e);
+        }
+    }
+
+    /**
+     * Uploads a part from a local file, so the part is streamed instead of being held in memory.
+     */
+    public String uploadPart(String prefix, String uploadId, int partNumber, RandomAccessFile data, long length){
+        try {
+            String etag = minioMetrics.record("multipart-upload-part", () -> minioAsyncClient.uploadPartAsync(defaultBucket, null, prefix, data, length, uploadId, partNumber, ImmutableMultimap.of(), ImmutableMultimap.of())
+                    .get()
+                    .etag());
+            minioMetrics.addUploaded(length);
+            return etag;
+        } catch (Exception e) {
+            throw new MinioOperationException("Error uploading part " + partNumber + " by prefix: " + prefix, e);
+        }
+    }
+
+    public ObjectWriteResponse completeMultipartUpload(String prefix, String uploadId, Part[] parts){
+        try {
+            return minioMetrics.record("multipart-complete", () -> minioAsyncClient.completeMultipartUploadAsync(defaultBucket, null, prefix, uploadId, parts, ImmutableMultimap.of(), ImmutableMultimap.of())
+                    .get());
+        } catch (Exception e) {
+            throw new MinioOperationException("Error completing multipart upload by prefix: " + prefix, e);
+        } finally {
+            invalidate(prefix);
+        }
+    }
+
+    /**
+     * All multipart uploads under the prefix that were started and neither completed nor aborted.
+     */
+    public List<Upload> listIncompleteUploads(String prefix){
+        List<Upload> uploads = new ArrayList<>();
+        String keyMarker = null;
+        String uploadIdMarker = null;
+
+        try {
+            ListMultipartUploadsResult result;
+            do {
+                String key = keyMarker;
+                String id = uploadIdMarker;
+                result = minioMetrics.record("multipart-list", () -> minioAsyncClient.listMultipartUploadsAsync(defaultBucket, null, null, null, key, 1000, prefix, id, ImmutableMultimap.of(), ImmutableMultimap.of())
+                        .get()
+                        .result());
+                uploads.addAll(result.uploads());
+                keyMarker = result.nextKeyMarker();
+                uploadIdMarker = result.nextUploadIdMarker();
+            } while (result.isTruncated());
+        } catch (Exception e) {
+            throw new MinioOperationException("Error listing multipart uploads by prefix: " + prefix, e);
+        }
+
+        return uploads;
+    }
+
+    public void abortMultipartUpload(String prefix, String uploadId){
+        try {
+            minioMetrics.record("multipart-abort", () -> minioAsyncClient.abortMultipartUploadAsync(defaultBucket, null, prefix, uploadId, ImmutableMultimap.of(), ImmutableMultimap.of())
+                    .get());
+        } catch (Exception e) {
+            throw new MinioOperationException("Error aborting multipart upload by prefix: " + prefix, e);
         }
     }
 
     public boolean exists(String prefix){
+        Boolean cached = existsCache.getIfPresent(prefix);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
             if(prefix.endsWith("/")){
-                return minioClient.listObjects(
+                boolean exists = minioMetrics.record("exists", () -> minioClient.listObjects(
                         ListObjectsArgs.builder()
                                 .bucket(defaultBucket)
                                 .prefix(prefix)
@@ -141,16 +383,25 @@ public class MinioRepository {
                                 .build()
                         )
                         .iterator()
-                        .hasNext();
+                        .hasNext());
+                existsCache.put(prefix, exists);
+                return exists;
             } else {
-                minioClient.statObject(
+                StatObjectResponse response = minioMetrics.record("exists", () -> minioClient.statObject(
                         StatObjectArgs.builder()
                                 .bucket(defaultBucket)
                                 .object(prefix)
                                 .build()
-                );
+                ));
+                statCache.put(prefix, response);
+                existsCache.put(prefix, true);
                 return true;
             }
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                existsCache.put(prefix, false);
+            }
+            return false;
         } catch (Exception e) {
             return false;
         }
@@ -163,4 +414,56 @@ public class MinioRepository {
             throw new MinioOperationException("Error reading item", e);
         }
     }
+
+    private GetObjectResponse metered(GetObjectResponse response) {
+        return withBody(response, minioMetrics.countDownload(response));
+    }
+
+    private GetObjectResponse decoded(GetObjectResponse response) throws IOException {
+        return withBody(response, storageCodec.decode(response.headers(), response));
+    }
+
+    private static GetObjectResponse withBody(GetObjectResponse response, InputStream body) {
+        return new GetObjectResponse(
+                response.headers(),
+                response.bucket(),
+                response.region(),
+                response.object(),
+                body
+        );
+    }
+
+    private static void closeQuietly(InputStream input) {
+        try {
+            input.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void invalidate(String prefix) {
+        statCache.invalidate(prefix);
+        existsCache.invalidate(prefix);
+        listCache.invalidate(new ListKey(prefix, true));
+        listCache.invalidate(new ListKey(prefix, false));
+
+        int slashIndex = prefix.lastIndexOf('/', prefix.length() - 2);
+        while (slashIndex >= 0) {
+            String parent = prefix.substring(0, slashIndex + 1);
+            existsCache.invalidate(parent);
+            listCache.invalidate(new ListKey(parent, true));
+            listCache.invalidate(new ListKey(parent, false));
+            slashIndex = prefix.lastIndexOf('/', slashIndex - 1);
+        }
+    }
+
+    private <K, V> Cache<K, V> buildCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+    }
+
+    private record ListKey(String prefix, boolean recursive) {
+    }
 }
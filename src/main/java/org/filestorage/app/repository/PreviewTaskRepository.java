@@ -0,0 +1,52 @@
+package org.filestorage.app.repository;
+
+import org.filestorage.app.model.PreviewTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PreviewTaskRepository extends JpaRepository<PreviewTask, Long> {
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO {h-schema}preview_tasks (resource_id, object_key)
+            SELECT id, :objectKey FROM {h-schema}resources WHERE user_id = :userId AND path = :path
+            """, nativeQuery = true)
+    void enqueue(@Param("userId") Long userId, @Param("path") String path, @Param("objectKey") String objectKey);
+
+    /**
+     * Leases up to limit tasks that are not being processed by another worker and have attempts left.
+     */
+    @Query(value = """
+            UPDATE {h-schema}preview_tasks
+            SET attempts = attempts + 1, locked_until = now() + make_interval(secs => :leaseSeconds)
+            WHERE id IN (
+                SELECT id FROM {h-schema}preview_tasks
+                WHERE (locked_until IS NULL OR locked_until < now()) AND attempts < :maxAttempts
+                ORDER BY id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING *
+            """, nativeQuery = true)
+    List<PreviewTask> claim(@Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Drops tasks whose last attempt never completed, for example because the worker died on them.
+     */
+    @Modifying
+    @Query(value = """
+            DELETE FROM {h-schema}preview_tasks
+            WHERE attempts >= :maxAttempts AND locked_until < now()
+            """, nativeQuery = true)
+    int deleteExhausted(@Param("maxAttempts") int maxAttempts);
+
+    @Modifying
+    @Query(value = "DELETE FROM {h-schema}preview_tasks WHERE id = :id", nativeQuery = true)
+    void complete(@Param("id") Long id);
+}
@@ -0,0 +1,159 @@
+package org.filestorage.app.repository;
+
+import org.filestorage.app.model.ResourceMetadata;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ResourceMetadataRepository extends JpaRepository<ResourceMetadata, Long> {
+
+    List<ResourceMetadata> findByUserIdAndParentOrderByPath(Long userId, String parent);
+
+    Optional<ResourceMetadata> findByUserIdAndPath(Long userId, String path);
+
+    @Query(value = """
+            SELECT * FROM {h-schema}resources
+            WHERE user_id = :userId AND parent = :parent AND path > :after
+            ORDER BY path
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ResourceMetadata> findPage(@Param("userId") Long userId,
+                                    @Param("parent") String parent,
+                                    @Param("after") String after,
+                                    @Param("limit") int limit);
+
+    boolean existsByUserIdAndPath(Long userId, String path);
+
+    boolean existsByUserIdAndBlobHashAndSize(Long userId, String blobHash, Long size);
+
+    @Query(value = """
+            SELECT * FROM {h-schema}resources
+            WHERE user_id = :userId AND path LIKE :pattern ESCAPE '\\' AND type = 'FILE'
+            ORDER BY path
+            """, nativeQuery = true)
+    List<ResourceMetadata> findFilesUnder(@Param("userId") Long userId, @Param("pattern") String pattern);
+
+    @Query(value = """
+            SELECT * FROM {h-schema}resources
+            WHERE user_id = :userId AND path LIKE :pattern ESCAPE '\\' AND type = 'FILE'
+            ORDER BY path
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ResourceMetadata> findFilesUnder(@Param("userId") Long userId, @Param("pattern") String pattern, @Param("limit") int limit);
+
+    @Query(value = """
+            SELECT COALESCE(SUM(size), 0) FROM {h-schema}resources
+            WHERE user_id = :userId AND path LIKE :pattern ESCAPE '\\'
+            """, nativeQuery = true)
+    long sumSizeUnder(@Param("userId") Long userId, @Param("pattern") String pattern);
+
+    @Modifying
+    @Query(value = """
+            UPDATE {h-schema}resources
+            SET object_key = :userPrefix || path
+            WHERE user_id = :userId AND path LIKE :pattern ESCAPE '\\'
+              AND type = 'FILE' AND object_key IS NULL AND blob_hash IS NULL
+            """, nativeQuery = true)
+    void pinObjectKeys(@Param("userId") Long userId, @Param("pattern") String pattern, @Param("userPrefix") String userPrefix);
+
+    @Query(value = """
+            SELECT * FROM {h-schema}resources
+            WHERE user_id = :userId AND lower(name) LIKE :pattern ESCAPE '\\'
+            ORDER BY path
+            """, nativeQuery = true)
+    List<ResourceMetadata> searchByName(@Param("userId") Long userId, @Param("pattern") String pattern);
+
+    @Query(value = """
+            SELECT * FROM {h-schema}resources
+            WHERE user_id = :userId AND lower(name) LIKE :pattern ESCAPE '\\' AND path > :after
+            ORDER BY path
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ResourceMetadata> searchPage(@Param("userId") Long userId,
+                                      @Param("pattern") String pattern,
+                                      @Param("after") String after,
+                                      @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO {h-schema}resources (user_id, path, parent, name, size, type, etag, blob_hash, object_key)
+            VALUES (:userId, :path, :parent, :name, :size, 'FILE', :etag, CAST(:blobHash AS VARCHAR), CAST(:objectKey AS TEXT))
+            ON CONFLICT (user_id, path) DO NOTHING
+            """, nativeQuery = true)
+    int insertFile(@Param("userId") Long userId,
+                   @Param("path") String path,
+                   @Param("parent") String parent,
+                   @Param("name") String name,
+                   @Param("size") Long size,
+                   @Param("etag") String etag,
+                   @Param("blobHash") String blobHash,
+                   @Param("objectKey") String objectKey);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO {h-schema}resources (user_id, path, parent, name, type)
+            VALUES (:userId, :path, :parent, :name, 'DIRECTORY')
+            ON CONFLICT (user_id, path) DO NOTHING
+            """, nativeQuery = true)
+    int insertDirectory(@Param("userId") Long userId,
+                         @Param("path") String path,
+                         @Param("parent") String parent,
+                         @Param("name") String name);
+
+    @Modifying
+    @Query(value = """
+            UPDATE {h-schema}resources
+            SET path = :to, parent = :toParent, name = :toName
+            WHERE user_id = :userId AND path = :from
+            """, nativeQuery = true)
+    void moveEntry(@Param("userId") Long userId,
+                   @Param("from") String from,
+                   @Param("to") String to,
+                   @Param("toParent") String toParent,
+                   @Param("toName") String toName);
+
+    @Modifying
+    @Query(value = """
+            UPDATE {h-schema}resources
+            SET path = :to || substr(path, :fromLength + 1),
+                parent = CASE WHEN path = :from THEN :toParent ELSE :to || substr(parent, :fromLength + 1) END,
+                name = CASE WHEN path = :from THEN :toName ELSE name END
+            WHERE user_id = :userId AND path LIKE :pattern ESCAPE '\\'
+            """, nativeQuery = true)
+    void moveSubtree(@Param("userId") Long userId,
+                     @Param("from") String from,
+                     @Param("fromLength") int fromLength,
+                     @Param("pattern") String pattern,
+                     @Param("to") String to,
+                     @Param("toParent") String toParent,
+                     @Param("toName") String toName);
+
+    @Modifying
+    @Query(value = "UPDATE {h-schema}resources SET has_preview = TRUE WHERE id = :id", nativeQuery = true)
+    void markPreview(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "DELETE FROM {h-schema}resources WHERE user_id = :userId AND id IN (:ids)", nativeQuery = true)
+    int deleteByIds(@Param("userId") Long userId, @Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM {h-schema}resources WHERE user_id = :userId AND path = :path", nativeQuery = true)
+    int deleteEntry(@Param("userId") Long userId, @Param("path") String path);
+
+    @Modifying
+    @Query(value = "DELETE FROM {h-schema}resources WHERE user_id = :userId AND path LIKE :pattern ESCAPE '\\'", nativeQuery = true)
+    int deleteSubtree(@Param("userId") Long userId, @Param("pattern") String pattern);
+
+    @Query(value = "SELECT resources_indexed FROM {h-schema}users WHERE id = :userId", nativeQuery = true)
+    Boolean isIndexed(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "UPDATE {h-schema}users SET resources_indexed = TRUE WHERE id = :userId", nativeQuery = true)
+    void markIndexed(@Param("userId") Long userId);
+}
@@ -0,0 +1,33 @@
+package org.filestorage.app.repository;
+
+import org.filestorage.app.model.StorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, Long> {
+
+    @Query(value = "SELECT user_id FROM {h-schema}storage_usage WHERE user_id = :userId FOR UPDATE", nativeQuery = true)
+    Long lock(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO {h-schema}storage_usage (user_id, bytes, objects)
+            VALUES (:userId, :bytes, :objects)
+            ON CONFLICT (user_id) DO UPDATE
+            SET bytes = storage_usage.bytes + EXCLUDED.bytes, objects = storage_usage.objects + EXCLUDED.objects
+            """, nativeQuery = true)
+    void add(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("objects") long objects);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO {h-schema}storage_usage (user_id, bytes, objects)
+            SELECT :userId, COALESCE(SUM(size), 0), COUNT(*) FROM {h-schema}resources WHERE user_id = :userId
+            ON CONFLICT (user_id) DO UPDATE
+            SET bytes = EXCLUDED.bytes, objects = EXCLUDED.objects
+            """, nativeQuery = true)
+    void recalculate(@Param("userId") Long userId);
+}
@@ -0,0 +1,263 @@
+package org.filestorage.app.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.filestorage.app.exception.MinioOperationException;
+import org.filestorage.app.model.ArchiveCache;
+import org.filestorage.app.model.ArchiveEntry;
+import org.filestorage.app.repository.ArchiveCacheRepository;
+import org.filestorage.app.repository.MinioRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Keeps generated directory archives in MinIO under archives/cache/, keyed by a fingerprint of the
+ * listing. Object keys of file content never change, so equal listings always produce equal archives.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ArchiveCacheService {
+
+    private static final String CACHE_PREFIX = "archives/cache/";
+
+    @Value("${archive.cache.enabled}")
+    private boolean enabled;
+
+    @Value("${archive.cache.max-size}")
+    private DataSize maxSize;
+
+    @Value("${archive.cache.max-archive-size}")
+    private DataSize maxArchiveSize;
+
+    @Value("${archive.cache.eviction-batch}")
+    private int evictionBatch;
+
+    private final ArchiveCacheRepository archiveCacheRepository;
+    private final MinioRepository minioRepository;
+
+    @Qualifier("archiveCacheExecutor")
+    private final Executor archiveCacheExecutor;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether an archive of these entries is small enough to be cached.
+     */
+    public boolean accepts(List<ArchiveEntry> entries) {
+        return enabled && entries.stream().mapToLong(ArchiveEntry::size).sum() <= maxArchiveSize.toBytes();
+    }
+
+    /**
+     * Key of the cached archive, or null on a miss.
+     */
+    public String find(String fingerprint) {
+        return archiveCacheRepository.touch(fingerprint) > 0 ? cacheKey(fingerprint) : null;
+    }
+
+    /**
+     * Streams the cached archive, or returns null on a miss.
+     */
+    public StreamingResponseBody open(String fingerprint) {
+        String key = find(fingerprint);
+        if (key == null) {
+            return null;
+        }
+
+        InputStream object;
+        try {
+            object = minioRepository.getObject(key);
+        } catch (MinioOperationException e) {
+            archiveCacheRepository.deleteByFingerprints(List.of(fingerprint));
+            return null;
+        }
+
+        return outputStream -> {
+            try (object) {
+                object.transferTo(outputStream);
+            }
+        };
+    }
+
+    /**
+     * Streams an archive produced by writer to the client and, once it is complete, stores a copy in the
+     * background. Errors on the caching side never fail the download, and the copy is dropped
+     * if the cache executor is busy.
+     */
+    public StreamingResponseBody populate(String fingerprint, ArchiveWriter writer) {
+        return outputStream -> {
+            Path archive = createTempFile();
+            CapturingOutputStream capturing = new CapturingOutputStream(outputStream, archive);
+            boolean handedOff = false;
+
+            try {
+                writer.write(capturing);
+                if (capturing.close(true)) {
+                    Path complete = archive;
+                    try {
+                        archiveCacheExecutor.execute(() -> storeFile(fingerprint, complete));
+                        handedOff = true;
+                    } catch (RejectedExecutionException e) {
+                        log.warn("Archive cache is busy, archive {} is not cached", fingerprint);
+                    }
+                }
+            } finally {
+                capturing.close(false);
+                if (!handedOff) {
+                    deleteQuietly(archive);
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds an archive already stored under sourceKey to the cache with a server side copy.
+     */
+    public void storeCopy(String fingerprint, String sourceKey, long size) {
+        minioRepository.copyObject(cacheKey(fingerprint), sourceKey);
+        register(fingerprint, size);
+    }
+
+    public static String fingerprint(List<ArchiveEntry> entries) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (ArchiveEntry entry : entries) {
+                digest.update(entry.name().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(entry.objectKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Long.toString(entry.size()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void storeFile(String fingerprint, Path archive) {
+        try (InputStream input = Files.newInputStream(archive)) {
+            long size = Files.size(archive);
+            minioRepository.putObject(cacheKey(fingerprint), input, size);
+            register(fingerprint, size);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to cache archive {} under {}", fingerprint, cacheKey(fingerprint), e);
+        } finally {
+            deleteQuietly(archive);
+        }
+    }
+
+    private void register(String fingerprint, long size) {
+        archiveCacheRepository.insert(fingerprint, size);
+
+        List<String> evicted = archiveCacheRepository.findOverBudget(maxSize.toBytes()).stream()
+                .map(ArchiveCache::getFingerprint)
+                .limit(Math.min(evictionBatch, MinioRepository.MAX_DELETE_BATCH))
+                .toList();
+
+        if (!evicted.isEmpty()) {
+            archiveCacheRepository.deleteByFingerprints(evicted);
+            minioRepository.removeObjects(evicted.stream().map(ArchiveCacheService::cacheKey).toList());
+        }
+    }
+
+    private static String cacheKey(String fingerprint) {
+        return CACHE_PREFIX + fingerprint + ".zip";
+    }
+
+    private static Path createTempFile() {
+        try {
+            return Files.createTempFile("archive-", ".zip");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file != null) {
+            file.toFile().delete();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ArchiveWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Passes everything to the client and keeps a copy in a file until the first error on the file side.
+     */
+    private static class CapturingOutputStream extends FilterOutputStream {
+
+        private OutputStream copy;
+
+        CapturingOutputStream(OutputStream client, Path file) {
+            super(client);
+            try {
+                copy = file != null ? Files.newOutputStream(file) : null;
+            } catch (IOException e) {
+                copy = null;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                try {
+                    copy.write(b);
+                } catch (IOException e) {
+                    close(false);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                try {
+                    copy.write(b, off, len);
+                } catch (IOException e) {
+                    close(false);
+                }
+            }
+        }
+
+        /**
+         * Closes the copy, returns true if it is complete and was kept.
+         */
+        boolean close(boolean keep) {
+            if (copy == null) {
+                return false;
+            }
+
+            try {
+                copy.close();
+            } catch (IOException e) {
+                keep = false;
+            }
+            copy = null;
+            return keep;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.filestorage.app.service;
+
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.exception.MinioOperationException;
+import org.filestorage.app.repository.BlobRepository;
+import org.filestorage.app.repository.MinioRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+@Service
+@RequiredArgsConstructor
+public class BlobService {
+
+    private static final String BLOB_PREFIX = "blobs/";
+    private static final String TEMP_PREFIX = "tmp/";
+    private static final Pattern HASH_PATTERN = Pattern.compile("^[0-9a-f]{64}$");
+
+    @Value("${storage.dedup.enabled}")
+    private boolean enabled;
+
+    private final BlobRepository blobRepository;
+    private final MinioRepository minioRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes a reference on an already stored blob, returns false if no blob with this hash and size exists.
+     */
+    @Transactional
+    public boolean acquire(String hash, long size) {
+        blobRepository.lock(hash);
+        return blobRepository.acquire(hash, size) > 0;
+    }
+
+    /**
+     * Takes a reference on the blob, uploading the content only if the blob is not stored yet.
+     */
+    @Transactional
+    public void store(String hash, long size, InputStreamSource content) {
+        blobRepository.lock(hash);
+        if (blobRepository.acquire(hash, size) > 0) {
+            return;
+        }
+
+        try (InputStream input = content.getInputStream()) {
+            minioRepository.putObject(blobKey(hash), input, size);
+        } catch (IOException e) {
+            throw new MinioOperationException("Error storing blob " + hash, e);
+        }
+        blobRepository.insert(hash, size);
+    }
+
+    /**
+     * Takes a reference on the blob for content already uploaded to a temporary key and removes that key.
+     */
+    @Transactional
+    public void adopt(String tempKey, String hash, long size) {
+        blobRepository.lock(hash);
+        try {
+            if (blobRepository.acquire(hash, size) > 0) {
+                return;
+            }
+
+            minioRepository.copyObject(blobKey(hash), tempKey);
+            blobRepository.insert(hash, size);
+        } finally {
+            minioRepository.removeObject(tempKey);
+        }
+    }
+
+    /**
+     * Drops a reference on the blob. The content of an unreferenced blob is removed only after the
+     * transaction commits, so a rollback never leaves rows pointing at deleted objects.
+     */
+    @Transactional
+    public void release(String hash) {
+        blobRepository.lock(hash);
+        blobRepository.release(hash);
+        if (blobRepository.deleteUnreferenced(hash) > 0) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeContent(hash);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the objects of a deleted blob unless the same content has been stored again in the meantime.
+     * A failure only leaves orphaned objects behind.
+     */
+    private void removeContent(String hash) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        try {
+            transaction.executeWithoutResult(status -> {
+                blobRepository.lock(hash);
+                if (!blobRepository.existsById(hash)) {
+                    minioRepository.removeObjects(List.of(blobKey(hash), PreviewService.previewKey(blobKey(hash))));
+                }
+            });
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    public static String blobKey(String hash) {
+        return BLOB_PREFIX + hash;
+    }
+
+    public static String tempKey() {
+        return TEMP_PREFIX + UUID.randomUUID();
+    }
+
+    public static boolean isValidHash(String hash) {
+        return hash != null && HASH_PATTERN.matcher(hash).matches();
+    }
+
+    public static DigestInputStream digesting(InputStream input) {
+        return new DigestInputStream(input, sha256());
+    }
+
+    public static String hash(InputStream input) throws IOException {
+        try (DigestInputStream digestInput = digesting(input)) {
+            digestInput.transferTo(OutputStream.nullOutputStream());
+            return hex(digestInput.getMessageDigest());
+        }
+    }
+
+    public static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.filestorage.app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Node-local read-through cache of downloaded files, bounded by total size with LRU eviction.
+ * Entries are keyed by object key and etag, so a changed object never hits a stale entry.
+ */
+@Service
+@RequiredArgsConstructor
+public class DownloadCacheService {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${download.cache.enabled}")
+    private boolean enabled;
+
+    @Value("${download.cache.directory}")
+    private Path directory;
+
+    @Value("${download.cache.max-size}")
+    private DataSize maxSize;
+
+    @Value("${download.cache.max-file-size}")
+    private DataSize maxFileSize;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize;
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() throws IOException {
+        hits = meterRegistry.counter("download.cache.requests", "result", "hit");
+        misses = meterRegistry.counter("download.cache.requests", "result", "miss");
+        Gauge.builder("download.cache.size", this, DownloadCacheService::size)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> existing = files.sorted(Comparator.comparing(DownloadCacheService::lastModified)).toList();
+            for (Path file : existing) {
+                if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else {
+                    register(file.getFileName().toString(), Files.size(file));
+                }
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean accepts(long size) {
+        return enabled && size <= maxFileSize.toBytes() && size <= maxSize.toBytes();
+    }
+
+    /**
+     * Streams the cached copy of the object, or returns null on a miss. The file is opened eagerly,
+     * so an eviction racing with the download does not break it.
+     */
+    public StreamingResponseBody serve(String objectKey, String etag, long offset, Long length) {
+        String name = entryName(objectKey, etag);
+
+        synchronized (this) {
+            if (entries.get(name) == null) {
+                misses.increment();
+                return null;
+            }
+        }
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.resolve(name), StandardOpenOption.READ);
+        } catch (IOException e) {
+            evict(name);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return outputStream -> {
+            try (channel) {
+                long position = offset;
+                long remaining = length != null ? length : channel.size() - offset;
+                WritableByteChannel target = Channels.newChannel(outputStream);
+
+                while (remaining > 0) {
+                    long transferred = channel.transferTo(position, remaining, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+        };
+    }
+
+    /**
+     * Streams the object to the client while writing it into the cache. A failure on the cache side
+     * only drops the entry, the download itself goes on.
+     */
+    public StreamingResponseBody populate(String objectKey, String etag, long size, InputStream object) {
+        String name = entryName(objectKey, etag);
+        Path temp = directory.resolve(name + "." + UUID.randomUUID() + TEMP_SUFFIX);
+
+        return outputStream -> {
+            OutputStream cacheOutput = openQuietly(temp);
+            long written = 0;
+
+            try (InputStream input = object) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                    if (cacheOutput != null) {
+                        try {
+                            cacheOutput.write(buffer, 0, read);
+                            written += read;
+                        } catch (IOException e) {
+                            closeQuietly(cacheOutput);
+                            cacheOutput = null;
+                        }
+                    }
+                }
+            } finally {
+                if (cacheOutput != null && closeQuietly(cacheOutput) && written == size) {
+                    commit(temp, name, size);
+                } else {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        };
+    }
+
+    private void commit(Path temp, String name, long size) {
+        try {
+            Files.move(temp, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            return;
+        }
+
+        register(name, size);
+    }
+
+    private synchronized void register(String name, long size) {
+        Long previous = entries.put(name, size);
+        totalSize += size - (previous != null ? previous : 0);
+
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalSize > maxSize.toBytes() && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(name)) {
+                continue;
+            }
+            eldest.remove();
+            totalSize -= entry.getValue();
+            deleteQuietly(directory.resolve(entry.getKey()));
+        }
+    }
+
+    private synchronized void evict(String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            totalSize -= size;
+        }
+    }
+
+    private synchronized long size() {
+        return totalSize;
+    }
+
+    private OutputStream openQuietly(Path temp) {
+        try {
+            return Files.newOutputStream(temp);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean closeQuietly(OutputStream output) {
+        try {
+            output.close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String entryName(String objectKey, String etag) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(objectKey.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(etag.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.filestorage.app.service;
+
+import com.github.luben.zstd.util.Native;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.util.ContentEncoding;
+import org.filestorage.app.util.ContentTypes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Compresses file downloads on the fly when the client accepts gzip or zstd and the file type
+ * is known to compress well. Files below the size threshold are sent as is.
+ */
+@Service
+@RequiredArgsConstructor
+public class DownloadCompressionService {
+
+    @Value("${download.compression.enabled}")
+    private boolean enabled;
+
+    @Value("${download.compression.min-size}")
+    private DataSize minSize;
+
+    @Value("${download.compression.types}")
+    private List<String> types;
+
+    @Value("${download.compression.zstd-level}")
+    private int zstdLevel;
+
+    private final MeterRegistry meterRegistry;
+
+    private List<MediaType> compressibleTypes;
+    private boolean zstdAvailable;
+
+    @PostConstruct
+    public void init() {
+        compressibleTypes = MediaType.parseMediaTypes(types);
+
+        try {
+            Native.load();
+            zstdAvailable = true;
+        } catch (UnsatisfiedLinkError e) {
+            zstdAvailable = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the encoding to send the file with, or null to send it uncompressed.
+     */
+    public ContentEncoding select(String acceptEncoding, String name, long size) {
+        if (!enabled || size < minSize.toBytes() || ContentTypes.isCompressed(name)) {
+            return null;
+        }
+
+        MediaType type = ContentTypes.of(name);
+        if (compressibleTypes.stream().noneMatch(compressible -> compressible.includes(type))) {
+            return null;
+        }
+
+        return ContentEncoding.negotiate(acceptEncoding, zstdAvailable);
+    }
+
+    public StreamingResponseBody compress(StreamingResponseBody body, ContentEncoding encoding) {
+        meterRegistry.counter("download.compression.requests", "encoding", encoding.token()).increment();
+
+        return outputStream -> {
+            try (OutputStream encoded = encoding.wrap(outputStream, zstdLevel)) {
+                body.writeTo(encoded);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.filestorage.app.service;
+
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.exception.ResourceNotFoundException;
+import org.filestorage.app.model.Job;
+import org.filestorage.app.repository.JobRepository;
+import org.filestorage.app.repository.MinioRepository;
+import org.filestorage.app.util.JobStatus;
+import org.filestorage.app.util.JobType;
+import org.filestorage.app.util.ResourcePath;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs long storage operations in the background. Jobs are rows in the jobs table leased by workers,
+ * so a job whose worker died is picked up again once its lease expires. All job types are safe to repeat.
+ */
+@Service
+@RequiredArgsConstructor
+public class JobService {
+
+    private static final String ARCHIVE_PREFIX = "archives/";
+    private static final int HEARTBEATS_PER_LEASE = 4;
+
+    @Value("${jobs.parallelism}")
+    private int parallelism;
+
+    @Value("${jobs.lease}")
+    private Duration lease;
+
+    @Value("${jobs.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${jobs.retention}")
+    private Duration retention;
+
+    @Value("${jobs.cleanup-batch}")
+    private int cleanupBatch;
+
+    private final JobRepository jobRepository;
+    private final MinioService minioService;
+    private final MinioRepository minioRepository;
+
+    @Qualifier("jobExecutor")
+    private final Executor jobExecutor;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    public Job submit(JobType type, ResourcePath path, ResourcePath target, Long userId) {
+        Instant now = Instant.now();
+        return jobRepository.save(new Job(
+                UUID.randomUUID(),
+                userId,
+                type,
+                JobStatus.PENDING,
+                path.value(),
+                target != null ? target.value() : null,
+                0L,
+                null,
+                null,
+                false,
+                0,
+                null,
+                now,
+                now
+        ));
+    }
+
+    public Job get(UUID id, Long userId) {
+        return jobRepository.findByIdAndUserId(id, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Job " + id + " not found"));
+    }
+
+    public List<Job> list(Long userId) {
+        return jobRepository.findTop50ByUserIdOrderByCreatedAtDesc(userId);
+    }
+
+    public Job cancel(UUID id, Long userId) {
+        jobRepository.cancel(id, userId);
+        return get(id, userId);
+    }
+
+    public StreamingResponseBody result(UUID id, Long userId) {
+        Job job = get(id, userId);
+
+        if (job.getStatus() != JobStatus.COMPLETED || job.getResult() == null) {
+            throw new ResourceNotFoundException("Job " + id + " has no result");
+        }
+
+        InputStream object = minioRepository.getObject(job.getResult());
+        return outputStream -> {
+            try (object) {
+                object.transferTo(outputStream);
+            }
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.poll-interval}")
+    public synchronized void poll() {
+        int free = parallelism - running.get();
+        if (free <= 0) {
+            return;
+        }
+
+        for (Job job : jobRepository.claim(free, lease.toSeconds())) {
+            running.incrementAndGet();
+            jobExecutor.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.cleanup-interval}")
+    public void cleanup() {
+        // Results of the batch are removed with a single multi-delete request
+        int limit = Math.min(cleanupBatch, MinioRepository.MAX_DELETE_BATCH);
+        List<Job> expired = jobRepository.findExpired(retention.toSeconds(), limit);
+
+        List<String> results = expired.stream().map(Job::getResult).filter(Objects::nonNull).toList();
+        if (!results.isEmpty()) {
+            minioRepository.removeObjects(results);
+        }
+        jobRepository.deleteAllByIdInBatch(expired.stream().map(Job::getId).toList());
+    }
+
+    private void run(Job job) {
+        if (job.isCancelRequested()) {
+            jobRepository.finish(job.getId(), JobStatus.CANCELLED.name(), null, null, null);
+            return;
+        }
+
+        if (job.getAttempts() > maxAttempts) {
+            jobRepository.finish(job.getId(), JobStatus.FAILED.name(), "Job was interrupted too many times", null, null);
+            return;
+        }
+
+        Heartbeat heartbeat = new Heartbeat(job.getId());
+
+        try {
+            String result = execute(job, heartbeat);
+            jobRepository.finish(job.getId(), JobStatus.COMPLETED.name(), null, result, heartbeat.processed);
+        } catch (RuntimeException e) {
+            if (isCancellation(e)) {
+                jobRepository.finish(job.getId(), JobStatus.CANCELLED.name(), null, null, heartbeat.processed);
+            } else {
+                jobRepository.finish(job.getId(), JobStatus.FAILED.name(), e.getMessage(), null, heartbeat.processed);
+            }
+        }
+    }
+
+    /**
+     * Cancellation can surface wrapped, e.g. when it is raised while MinIO reads the uploaded stream.
+     */
+    private static boolean isCancellation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String execute(Job job, LongConsumer progress) {
+        ResourcePath path = ResourcePath.parse(job.getPath());
+
+        switch (job.getType()) {
+            case DELETE -> minioService.deleteResource(path, job.getUserId(), progress);
+            case MOVE -> {
+                ResourcePath target = ResourcePath.parse(job.getTarget());
+                boolean done = !minioService.exists(path, job.getUserId()) && minioService.exists(target, job.getUserId());
+                if (!done) {
+                    progress.accept(0);
+                    minioService.moveResource(path, target, job.getUserId());
+                }
+                progress.accept(1);
+            }
+            case ARCHIVE -> {
+                String objectKey = ARCHIVE_PREFIX + job.getUserId() + "/" + job.getId() + ".zip";
+                minioService.archiveDirectory(path, job.getUserId(), objectKey, progress);
+                return objectKey;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Progress callback of a running job. It renews the lease and checks for cancellation at most a few times
+     * per lease, however often the job reports progress; the first report always goes through.
+     */
+    private class Heartbeat implements LongConsumer {
+
+        private final UUID id;
+        private final long intervalNanos = lease.toNanos() / HEARTBEATS_PER_LEASE;
+        private long lastBeat;
+        private boolean beaten;
+        private Long processed;
+
+        private Heartbeat(UUID id) {
+            this.id = id;
+        }
+
+        @Override
+        public void accept(long value) {
+            processed = value;
+
+            long now = System.nanoTime();
+            if (beaten && now - lastBeat < intervalNanos) {
+                return;
+            }
+            beaten = true;
+            lastBeat = now;
+
+            if (jobRepository.heartbeat(id, value, lease.toSeconds()) == 0) {
+                throw new CancellationException("Job " + id + " was cancelled");
+            }
+        }
+    }
+}
@@ -1,287 +1,529 @@
 package org.filestorage.app.service;
 
 import io.minio.*;
-import io.minio.messages.DeleteObject;
-import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
 import org.filestorage.app.exception.MinioOperationException;
+import org.filestorage.app.exception.PathNotValidException;
+import org.filestorage.app.exception.QueryNotValidException;
+import org.filestorage.app.exception.QuotaExceededException;
 import org.filestorage.app.exception.ResourceAlreadyExistException;
+import org.filestorage.app.exception.ResourceNotFoundException;
 import org.filestorage.app.exception.ResourceSizeException;
+import org.filestorage.app.model.ArchiveEntry;
+import org.filestorage.app.model.FileDescriptor;
 import org.filestorage.app.model.MinioResource;
+import org.filestorage.app.model.ResourceMetadata;
+import org.filestorage.app.model.ResourcePage;
+import org.filestorage.app.model.UploadResult;
 import org.filestorage.app.repository.MinioRepository;
+import org.filestorage.app.util.CountingInputStream;
+import org.filestorage.app.util.MinioMetrics;
+import org.filestorage.app.util.ResourcePath;
 import org.filestorage.app.util.ResourceType;
+import org.filestorage.app.util.StorageCodec;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.Base64;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
-
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class MinioService {
 
-    @Value("${minio.default.bucket}")
-    private String defaultBucket;
-
     @Value("${minio.user.prefix}")
     private String userPrefix;
 
     @Value("${minio.user.suffix}")
     private String userSuffix;
 
+    @Value("${minio.upload.part-size}")
+    private DataSize uploadPartSize;
+
+    @Value("${minio.upload.stream.max-file-size}")
+    private DataSize streamMaxFileSize;
+
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+    public static final String OBJECT_PREFIX = "objects/";
+    private static final int DELETE_BATCH = MinioRepository.MAX_DELETE_BATCH / 2;
 
     private final MinioRepository minioRepository;
+    private final ResourceIndexService resourceIndexService;
+    private final BlobService blobService;
+    private final StorageUsageService storageUsageService;
+    private final DownloadCacheService downloadCacheService;
+    private final PreviewService previewService;
+    private final ArchiveCacheService archiveCacheService;
+
+    private final ZipArchiveService zipArchiveService;
+    private final MinioMetrics minioMetrics;
 
-    public MinioResource getResource(String path, Long userId){
-        if(path.endsWith("/")){
+    @Qualifier("uploadExecutor")
+    private final Executor uploadExecutor;
+
+    public MinioResource getResource(ResourcePath path, Long userId){
+        if(path.isDirectory()){
             return getDirectory(path);
         } else {
             return getFile(path, userId);
         }
     }
 
-    public void deleteResource(String path, Long userId){
-        if(path.endsWith("/")){
-            deleteDirectory(path, userId);
-        } else {
-            deleteFile(path, userId);
-        }
+    public void deleteResource(ResourcePath path, Long userId){
+        deleteResource(path, userId, deleted -> {});
     }
 
-    public StreamingResponseBody downloadResource(String path, Long userId){
-        if(path.endsWith("/")){
+    /**
+     * Deletes the subtree batch by batch, so memory use does not depend on its size. Objects are removed
+     * before their rows, which keeps an interrupted delete safe to repeat.
+     */
+    public void deleteResource(ResourcePath path, Long userId, LongConsumer progress){
+        String userKey = constructUserPrefix(userId);
+        long deleted = 0;
+        List<ResourceMetadata> files;
+
+        do {
+            files = resourceIndexService.files(userId, path.indexKey(), DELETE_BATCH);
+
+            List<String> objectKeys = new ArrayList<>(MinioRepository.MAX_DELETE_BATCH);
+            for (ResourceMetadata file : files) {
+                if (file.getBlobHash() != null) continue;
+
+                objectKeys.add(contentKey(file, userKey));
+                if (file.isHasPreview()) {
+                    objectKeys.add(PreviewService.previewKey(contentKey(file, userKey)));
+                }
+            }
+
+            if (!objectKeys.isEmpty()) {
+                minioRepository.removeObjects(objectKeys);
+            }
+            resourceIndexService.deleteFiles(userId, files);
+
+            deleted += files.size();
+            progress.accept(deleted);
+        } while (files.size() == DELETE_BATCH);
+
+        resourceIndexService.delete(userId, path.indexKey());
+    }
+
+    public StreamingResponseBody downloadResource(ResourcePath path, Long userId){
+        if(path.isDirectory()){
             return downloadDirectory(path, userId);
         } else {
-            return downloadFile(path, userId);
+            return downloadFile(describeFile(path, userId), 0, null);
         }
     }
 
-    public void moveResource(String from, String to, Long userId){
-        String prefixTo = constructUserPrefix(userId) + to;
+    public void moveResource(ResourcePath from, ResourcePath to, Long userId){
+        if(from.contains(to)){
+            throw new PathNotValidException("Directory " + from + " can not be moved into itself");
+        }
 
-        if(minioRepository.exists(prefixTo)){
+        if(exists(to, userId)){
             throw new ResourceAlreadyExistException("Resource already exists");
         }
 
-        if(from.endsWith("/")){
-            moveDirectory(from, to, userId);
-        } else {
-            moveFile(from, to, userId);
-        }
+        resourceIndexService.move(userId, from.indexKey(), to.indexKey(), constructUserPrefix(userId));
     }
 
-    public void uploadResource(String path, Long userId, MultipartFile[] resources) {
+    public List<UploadResult> uploadResource(ResourcePath path, Long userId, MultipartFile[] resources) {
+        List<CompletableFuture<UploadResult>> uploads = new ArrayList<>();
+
         for(MultipartFile resource : resources) {
-            if(resource.getSize() > MAX_FILE_SIZE) {
-                throw new ResourceSizeException("File " + resource.getName() + " is too large");
-            }
+            uploads.add(CompletableFuture.supplyAsync(() -> uploadSingle(path, userId, resource), uploadExecutor));
+        }
+
+        List<UploadResult> results = uploads.stream()
+                .map(CompletableFuture::join)
+                .toList();
 
-            uploadProcess(path, userId, resource);
+        if(results.stream().noneMatch(UploadResult::isSuccess)) {
+            throw results.get(0).getError();
         }
+
+        return results;
     }
 
-    public List<MinioResource> getResources(String path, Long userId){
-        List<MinioResource> resources = new ArrayList<>();
+    public void uploadResourceStream(ResourcePath path, Long userId, FileItemInputIterator parts) {
+        try {
+            parts.setFileSizeMax(streamMaxFileSize.toBytes());
 
-        String normalizedPath = path.equals("/") ? "" : path;
-        String prefix = constructUserPrefix(userId) + normalizedPath;
+            while (parts.hasNext()) {
+                FileItemInput part = parts.next();
+                if (part.isFormField() || part.getName() == null || part.getName().isEmpty()) continue;
 
-        Iterable<Result<Item>> results = minioRepository.list(prefix, false);
+                uploadStreamProcess(path.append(part.getName()), userId, part.getInputStream());
+            }
+        } catch (IOException e) {
+            throw new MinioOperationException("Error reading upload stream " + path, e);
+        }
+    }
 
-        for (Result<Item> result : results) {
-            Item item = minioRepository.extractItem(result);
+    public List<MinioResource> getResources(ResourcePath path, Long userId){
+        ensureIndexed(userId);
 
-            if (item.objectName().equals(prefix)) continue;
+        return toResources(path.value(), resourceIndexService.list(userId, path.indexKey()));
+    }
 
-            MinioResource resource = new MinioResource();
-            resource.setPath(path);
+    /**
+     * One page of the directory in path order. The cursor is the opaque token returned with the previous page.
+     */
+    public ResourcePage getResourcePage(ResourcePath path, Long userId, String cursor, int limit){
+        ensureIndexed(userId);
 
-            if(item.objectName().endsWith("/")){
-                resource.setName(extractDirectoryName(item.objectName()));
-                resource.setType(ResourceType.DIRECTORY);
-            } else {
-                resource.setName(extractFileName(item.objectName()));
-                resource.setSize(item.size());
-                resource.setType(ResourceType.FILE);
-            }
+        String after = decodeCursor(cursor, path);
+        List<ResourceMetadata> entries = resourceIndexService.list(userId, path.indexKey(), after, limit + 1);
 
-            resources.add(resource);
+        String nextCursor = null;
+        if(entries.size() > limit){
+            entries = entries.subList(0, limit);
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(entries.get(limit - 1).getPath().getBytes(StandardCharsets.UTF_8));
         }
 
-        return resources;
+        return new ResourcePage(toResources(path.value(), entries), nextCursor);
     }
 
-    public List<MinioResource> getResourcesByUser(Long userId, String query){
+    static String decodeCursor(String cursor, ResourcePath path){
+        if(cursor == null || cursor.isEmpty()){
+            return "";
+        }
 
-        List<MinioResource> resources = new ArrayList<>();
+        String after;
+        try {
+            after = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new QueryNotValidException("Cursor not valid");
+        }
 
-        Set<String> resourcesSet = new LinkedHashSet<>();
-        String prefix = constructUserPrefix(userId);
+        if(!after.startsWith(path.indexKey())){
+            throw new QueryNotValidException("Cursor not valid");
+        }
+        return after;
+    }
 
-        Iterable<Result<Item>> results = minioRepository.list(prefix, true);
+    public void forEachResource(ResourcePath path, Long userId, Consumer<MinioResource> action){
+        ensureIndexed(userId);
 
-        for (Result<Item> result : results) {
-            Item item = minioRepository.extractItem(result);
-            if (item.objectName().equals(prefix)) continue;
+        resourceIndexService.forEach(userId, path.indexKey(), metadata -> action.accept(toResource(path.value(), metadata)));
+    }
 
-            int indexOfFirstSlash = item.objectName().indexOf("/");
-            String path = item.objectName().substring(indexOfFirstSlash + 1, item.objectName().length());
+    static List<MinioResource> toResources(String path, List<ResourceMetadata> entries){
+        List<MinioResource> resources = new ArrayList<>(entries.size());
 
-            resourcesSet.add(path);
+        for (ResourceMetadata metadata : entries) {
+            resources.add(toResource(path, metadata));
+        }
 
-            if (!path.endsWith("/")) {
-                path = path.substring(0, path.lastIndexOf('/') + 1);
-            }
+        return resources;
+    }
 
-            while (path.contains("/")) {
-                resourcesSet.add(path);
-                path = path.substring(0, path.substring(0, path.length() - 1).lastIndexOf('/') + 1);
-            }
+    private static MinioResource toResource(String path, ResourceMetadata metadata){
+        return new MinioResource(
+                path,
+                metadata.getName(),
+                metadata.getSize(),
+                metadata.getType(),
+                metadata.isHasPreview()
+        );
+    }
+
+    public void ensureIndexed(Long userId){
+        if(!resourceIndexService.isIndexed(userId)){
+            resourceIndexService.rebuild(userId, constructUserPrefix(userId));
         }
+    }
 
-        for(String path : resourcesSet){
-            MinioResource resource = getResource(path, userId);
-            if(resource.getName().toLowerCase().contains(query.toLowerCase())) resources.add(resource);
+    public boolean exists(ResourcePath path, Long userId){
+        if(path.isRoot()){
+            return true;
         }
 
-        return resources;
+        ensureIndexed(userId);
+        return resourceIndexService.exists(userId, path.indexKey());
     }
 
-    public void createDirectory(String path, Long userId){
-        String prefix = constructUserPrefix(userId) + path;
+    /**
+     * Creates a file with the content of another file of the same user. Only content the user already
+     * references can be linked, so the hash of someone else's file neither gives access to it nor reveals that it exists.
+     */
+    public MinioResource link(ResourcePath path, Long userId, String hash, long size){
+        if(!blobService.isEnabled()
+                || !resourceIndexService.references(userId, hash, size)
+                || !blobService.acquire(hash, size)){
+            throw new ResourceNotFoundException("Content " + hash + " not found");
+        }
+
+        try {
+            if(exists(path, userId)){
+                throw new ResourceAlreadyExistException("Resource already exists");
+            }
+            storageUsageService.checkQuota(userId, size, 1);
+            resourceIndexService.addFile(userId, path.indexKey(), size, hash, hash, null);
+        } catch (RuntimeException e) {
+            blobService.release(hash);
+            throw e;
+        }
+
+        previewService.enqueue(userId, path, BlobService.blobKey(hash));
+
+        return getResource(path, userId);
+    }
 
-        if(minioRepository.exists(prefix)){
+    public void createDirectory(ResourcePath path, Long userId){
+        if(exists(path, userId)){
             throw new ResourceAlreadyExistException("Directory " + path + " already exists");
         }
 
-        minioRepository.putObject(prefix, new ByteArrayInputStream(new byte[0]), 0L);
+        storageUsageService.checkQuota(userId, 0, 1);
+        resourceIndexService.addDirectory(userId, path.indexKey());
     }
 
-    private MinioResource getDirectory(String path){
+    private MinioResource getDirectory(ResourcePath path){
         return new MinioResource(
-                extractDirectoryPath(path),
-                extractDirectoryName(path),
+                path.parent(),
+                path.name(),
                 null,
-                ResourceType.DIRECTORY
+                ResourceType.DIRECTORY,
+                false
         );
     }
 
-    private MinioResource getFile(String path, Long userId){
-        StatObjectResponse response = minioRepository.stat(constructUserPrefix(userId) + path);
+    private MinioResource getFile(ResourcePath path, Long userId){
+        ResourceMetadata file = findFile(path, userId);
         return new MinioResource(
-                extractFilePath(path),
-                extractFileName(path),
-                response.size(),
-                ResourceType.FILE
+                path.parent(),
+                path.name(),
+                file.getSize(),
+                ResourceType.FILE,
+                file.isHasPreview()
         );
     }
 
-    private void deleteDirectory(String path, Long userId){
-
-        Iterable<Result<Item>> results = minioRepository.list(constructUserPrefix(userId) + path, true);
+    /**
+     * Builds the ZIP archive of the directory in a local temp file and stores it under objectKey.
+     * Progress is reported per file and also while large files are compressed and while the archive is uploaded,
+     * so the job keeps its lease; the callback is expected to throttle itself.
+     */
+    public void archiveDirectory(ResourcePath path, Long userId, String objectKey, LongConsumer progress){
+        List<ArchiveEntry> entries = archiveEntries(path, userId);
+        String fingerprint = archiveCacheService.isEnabled() ? ArchiveCacheService.fingerprint(entries) : null;
+
+        String cached = fingerprint != null ? archiveCacheService.find(fingerprint) : null;
+        if(cached != null){
+            try {
+                minioRepository.copyObject(objectKey, cached);
+                progress.accept(entries.size());
+                return;
+            } catch (MinioOperationException e) {
+                // A broken cache entry is not fatal, the archive is built again below
+                log.warn("Failed to copy cached archive {} (fingerprint {}) to {}", cached, fingerprint, objectKey, e);
+            }
+        }
 
-        List<DeleteObject> objects = StreamSupport.stream(results.spliterator(), false)
-                .map(minioRepository::extractItem)
-                .map(Item::objectName)
-                .map(DeleteObject::new)
-                .collect(Collectors.toCollection(ArrayList::new));
+        AtomicLong written = new AtomicLong();
+        Iterable<ArchiveEntry> tracked = () -> entries.stream()
+                .peek(entry -> progress.accept(written.incrementAndGet()))
+                .iterator();
 
-        if(objects.isEmpty()){
-            objects.add(new DeleteObject(constructUserPrefix(userId) + path));
+        Path archive = null;
+        try {
+            archive = Files.createTempFile("archive-", ".zip");
+            try (OutputStream output = reporting(Files.newOutputStream(archive), () -> progress.accept(written.get()))) {
+                zipArchiveService.write(output, tracked);
+            }
+            long size = Files.size(archive);
+            try (InputStream input = reporting(Files.newInputStream(archive), () -> progress.accept(entries.size()))) {
+                minioRepository.putObject(objectKey, input, size);
+            }
+            if(fingerprint != null && archiveCacheService.accepts(entries)){
+                try {
+                    archiveCacheService.storeCopy(fingerprint, objectKey, size);
+                } catch (MinioOperationException e) {
+                    // The archive itself is stored, only the cache misses it
+                    log.warn("Failed to cache archive {} (fingerprint {})", objectKey, fingerprint, e);
+                }
+            }
+        } catch (IOException e) {
+            throw new MinioOperationException("Error zip processing " + path, e);
+        } finally {
+            if (archive != null) {
+                archive.toFile().delete();
+            }
         }
-
-        minioRepository.removeObjects(objects);
     }
 
-    private void deleteFile(String path, Long userId){
-        minioRepository.removeObject(constructUserPrefix(userId) + path);
+    private static OutputStream reporting(OutputStream output, Runnable report){
+        return new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                report.run();
+            }
+        };
     }
 
-    private StreamingResponseBody downloadDirectory(String path, Long userId){
-
-        Iterable<Result<Item>> results = minioRepository.list(constructUserPrefix(userId) + path, true);
-
-        StreamingResponseBody stream = outputStream -> {
-            try (ZipOutputStream zipOut = new ZipOutputStream(outputStream)) {
-                String prefix = (constructUserPrefix(userId) + path);
+    private static InputStream reporting(InputStream input, Runnable report){
+        return new FilterInputStream(input) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = in.read(b, off, len);
+                report.run();
+                return read;
+            }
+        };
+    }
 
-                for (Result<Item> result : results) {
-                    Item item = minioRepository.extractItem(result);
-                    if (item.isDir()) continue;
+    private List<ArchiveEntry> archiveEntries(ResourcePath path, Long userId){
+        String userKey = constructUserPrefix(userId);
+        String directory = path.indexKey();
 
-                    String objectName = item.objectName();
+        return resourceIndexService.filesUnder(userId, directory).stream()
+                .map(file -> new ArchiveEntry(file.getPath().substring(directory.length()), contentKey(file, userKey), file.getSize()))
+                .toList();
+    }
 
-                    String entryName = objectName.substring(prefix.length());
-                    try (InputStream input = minioRepository.getObject(objectName)) {
-                        ZipEntry entry = new ZipEntry(entryName);
-                        zipOut.putNextEntry(entry);
-                        input.transferTo(zipOut);
-                        zipOut.closeEntry();
-                    }
+    private StreamingResponseBody downloadDirectory(ResourcePath path, Long userId){
 
-                }
+        List<ArchiveEntry> entries = archiveEntries(path, userId);
+        ArchiveCacheService.ArchiveWriter writer = outputStream -> {
+            try {
+                zipArchiveService.write(outputStream, entries);
             } catch (Exception e) {
                 throw new MinioOperationException("Error zip processing " + path, e);
             }
         };
 
-        return stream;
+        if(archiveCacheService.isEnabled()){
+            String fingerprint = ArchiveCacheService.fingerprint(entries);
+
+            StreamingResponseBody cached = archiveCacheService.open(fingerprint);
+            if(cached != null){
+                return minioMetrics.track(cached);
+            }
+
+            if(archiveCacheService.accepts(entries)){
+                return minioMetrics.track(archiveCacheService.populate(fingerprint, writer));
+            }
+        }
+
+        return minioMetrics.track(writer::write);
     }
 
-    private StreamingResponseBody downloadFile(String path, Long userId){
-        GetObjectResponse object = minioRepository.getObject(constructUserPrefix(userId) + path);
-        return outputStream -> {
+    /**
+     * Resolves the file once for a download: the returned descriptor pins the object and its version,
+     * so headers and body always describe the same content.
+     */
+    public FileDescriptor describeFile(ResourcePath path, Long userId){
+        ResourceMetadata file = findFile(path, userId);
+        String objectKey = contentKey(file, constructUserPrefix(userId));
+        StatObjectResponse response = minioRepository.stat(objectKey);
+
+        Long size = StorageCodec.originalSize(response.headers(), response.size());
+        return new FileDescriptor(
+                response.etag(),
+                response.lastModified().toInstant(),
+                size != null ? size : file.getSize(),
+                objectKey
+        );
+    }
+
+    public StreamingResponseBody downloadPreview(ResourcePath path, Long userId){
+        ResourceMetadata file = findFile(path, userId);
+
+        if(!file.isHasPreview()){
+            throw new ResourceNotFoundException("Preview of " + path + " not found");
+        }
+
+        GetObjectResponse object = minioRepository.getObject(PreviewService.previewKey(contentKey(file, constructUserPrefix(userId))));
+        return minioMetrics.track(outputStream -> {
             try (InputStream input = object){
                 input.transferTo(outputStream);
             }
-        };
+        });
     }
 
-    private void moveDirectory(String from, String to, Long userId){
+    public StreamingResponseBody downloadFile(FileDescriptor file, long offset, Long length){
+        String objectKey = file.getObjectKey();
 
-        String source = constructUserPrefix(userId) + from;
-        List<Item> items = new ArrayList<>();
-        Iterable<Result<Item>> results = minioRepository.list(source, true);
+        if(downloadCacheService.isEnabled()){
+            StreamingResponseBody cached = downloadCacheService.serve(objectKey, file.getEtag(), offset, length);
+            if(cached != null){
+                return cached;
+            }
 
-        for (Result<Item> result : results) {
-            items.add(minioRepository.extractItem(result));
+            if(offset == 0 && length == null && downloadCacheService.accepts(file.getSize())){
+                GetObjectResponse object = minioRepository.getObject(objectKey, 0, null, file.getEtag());
+                return minioMetrics.track(downloadCacheService.populate(objectKey, file.getEtag(), file.getSize(), object));
+            }
         }
 
-        for (Item item : items) {
-            String target = item.objectName().replaceFirst(source, "");
-            String targetPath = constructUserPrefix(userId) + to + target;
-            minioRepository.copyObject(targetPath, item.objectName());
-        }
+        GetObjectResponse object = minioRepository.getObject(objectKey, offset, length, file.getEtag());
+        return minioMetrics.track(outputStream -> {
+            try (InputStream input = object){
+                input.transferTo(outputStream);
+            }
+        });
+    }
 
-        for (Item item : items) {
-            minioRepository.removeObject(item.objectName());
+    private UploadResult uploadSingle(ResourcePath path, Long userId, MultipartFile resource) {
+        ResourcePath resourcePath;
+        try {
+            resourcePath = path.append(resource.getOriginalFilename());
+        } catch (PathNotValidException e) {
+            return new UploadResult(path.value(), resource.getOriginalFilename(), null, e);
         }
-    }
 
-    private void moveFile(String from, String to, Long userId){
-        String sourcePath = constructUserPrefix(userId) + from;
-        String targetPath = constructUserPrefix(userId) + to;
+        try {
+            if(resource.getSize() > MAX_FILE_SIZE) {
+                throw new ResourceSizeException("File " + resource.getOriginalFilename() + " is too large");
+            }
 
-        minioRepository.copyObject(targetPath, sourcePath);
-        minioRepository.removeObject(sourcePath);
+            uploadProcess(resourcePath, userId, resource);
+
+            MinioResource uploaded = new MinioResource(
+                    resourcePath.parent(),
+                    resourcePath.name(),
+                    resource.getSize(),
+                    ResourceType.FILE,
+                    false
+            );
+            return new UploadResult(resourcePath.parent(), resourcePath.name(), uploaded, null);
+        } catch (RuntimeException e) {
+            return new UploadResult(resourcePath.parent(), resourcePath.name(), null, e);
+        }
     }
 
-    private void uploadProcess(String path, Long userId, MultipartFile resource) {
-
-        String prefix = constructUserPrefix(userId) + path + resource.getOriginalFilename();
+    private void uploadProcess(ResourcePath path, Long userId, MultipartFile resource) {
 
-        if(minioRepository.exists(prefix)) {
+        if(exists(path, userId)) {
             throw new ResourceAlreadyExistException("Resource already exists");
         }
 
@@ -289,57 +531,128 @@ public class MinioService {
             throw new MinioOperationException("Resource is empty");
         };
 
+        storageUsageService.checkQuota(userId, resource.getSize(), 1);
+
+        if(blobService.isEnabled()) {
+            String hash;
+            try {
+                hash = BlobService.hash(resource.getInputStream());
+            } catch (IOException e) {
+                throw new MinioOperationException("Error reading resource " + path, e);
+            }
+
+            blobService.store(hash, resource.getSize(), resource);
+            addStoredFile(path, userId, resource.getSize(), hash, hash, null);
+            previewService.enqueue(userId, path, BlobService.blobKey(hash));
+            return;
+        }
+
+        String objectKey = newObjectKey(userId);
+        ObjectWriteResponse response;
         try {
-            minioRepository.putObject(prefix, resource.getInputStream(), resource.getSize());
+            response = minioRepository.putObject(objectKey, resource.getInputStream(), resource.getSize());
         } catch (Exception e) {
             throw new MinioOperationException("Error uploading resource " + path, e);
         }
 
+        addStoredFile(path, userId, resource.getSize(), response.etag(), null, objectKey);
+        previewService.enqueue(userId, path, objectKey);
     }
 
-    public void createUserPrefix(Long userId){
-        String prefix = constructUserPrefix(userId);
-        minioRepository.putObject(prefix, new ByteArrayInputStream(new byte[0]), 0L);
-    }
+    private void uploadStreamProcess(ResourcePath path, Long userId, InputStream input) throws IOException {
 
-    public String constructUserPrefix(Long userId){
-        StringBuilder prefix = new StringBuilder();
-        prefix.append(userPrefix);
-        prefix.append(userId);
-        prefix.append(userSuffix);
-        return prefix.toString();
+        if(exists(path, userId)) {
+            throw new ResourceAlreadyExistException("Resource already exists");
+        }
+
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, 1);
+        int firstByte = pushbackInput.read();
+        if(firstByte == -1) {
+            throw new MinioOperationException("Resource is empty");
+        }
+        pushbackInput.unread(firstByte);
+
+        storageUsageService.checkQuota(userId, 1, 1);
+
+        CountingInputStream countingInput = new CountingInputStream(pushbackInput, storageUsageService.remainingBytes(userId));
+        DigestInputStream digestInput = blobService.isEnabled() ? BlobService.digesting(countingInput) : null;
+        String key = blobService.isEnabled() ? BlobService.tempKey() : newObjectKey(userId);
+
+        ObjectWriteResponse response;
+        try {
+            response = minioRepository.putObjectStream(key, digestInput != null ? digestInput : countingInput, uploadPartSize.toBytes());
+        } catch (MinioOperationException e) {
+            if(countingInput.getCount() >= streamMaxFileSize.toBytes()) {
+                throw new ResourceSizeException("File " + path.name() + " is too large");
+            }
+            if(countingInput.isLimitExceeded()) {
+                throw new QuotaExceededException("Storage quota exceeded uploading " + path.name());
+            }
+            throw e;
+        }
+
+        if(digestInput != null) {
+            String hash = BlobService.hex(digestInput.getMessageDigest());
+            blobService.adopt(key, hash, countingInput.getCount());
+            addStoredFile(path, userId, countingInput.getCount(), hash, hash, null);
+            previewService.enqueue(userId, path, BlobService.blobKey(hash));
+            return;
+        }
+
+        addStoredFile(path, userId, countingInput.getCount(), response.etag(), null, key);
+        previewService.enqueue(userId, path, key);
     }
 
-    private String extractDirectoryName(String path){
-        if(path.equals("/")){
-            return path;
-        } else {
-            String normalizedPath = path.substring(0, path.length() - 1);
-            int slashIndex = normalizedPath.lastIndexOf("/");
-            return slashIndex > 0 ? path.substring(slashIndex + 1) : path;
+    /**
+     * Indexes content that is already stored under a blob reference or an object key. If the file can not be
+     * indexed, the reference is released or the object removed before the error is passed on.
+     */
+    public void addStoredFile(ResourcePath path, Long userId, long size, String etag, String blobHash, String objectKey){
+        try {
+            resourceIndexService.addFile(userId, path.indexKey(), size, etag, blobHash, objectKey);
+        } catch (RuntimeException e) {
+            try {
+                if(blobHash != null){
+                    blobService.release(blobHash);
+                } else {
+                    minioRepository.removeObject(objectKey);
+                }
+            } catch (RuntimeException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
         }
     }
 
-    private String extractDirectoryPath(String path){
-        long count = path.chars().filter(c -> c == '/').count();
+    private ResourceMetadata findFile(ResourcePath path, Long userId){
+        return resourceIndexService.find(userId, path.indexKey())
+                .orElseThrow(() -> new ResourceNotFoundException("Resource " + path + " not found"));
+    }
 
-        if(count <= 1) {
-            return "/";
-        } else {
-            String normalizedPath = path.substring(0, path.length() - 1);
-            int slashIndex = normalizedPath.lastIndexOf("/");
-            return normalizedPath.substring(0, slashIndex + 1);
+    private static String contentKey(ResourceMetadata file, String userKey){
+        if(file.getBlobHash() != null){
+            return BlobService.blobKey(file.getBlobHash());
         }
+        return file.getObjectKey() != null ? file.getObjectKey() : userKey + file.getPath();
     }
 
-    private String extractFileName(String sourcePath){
-        int slashIndex = sourcePath.lastIndexOf("/");
-        return slashIndex < 1 ? sourcePath : sourcePath.substring(slashIndex + 1);
+    public String newObjectKey(Long userId){
+        return OBJECT_PREFIX + userId + "/" + UUID.randomUUID();
     }
 
-    private String extractFilePath(String sourcePath){
-        int slashIndex = sourcePath.lastIndexOf("/");
-        return slashIndex < 1 ? "/" : sourcePath.substring(0, slashIndex + 1);
+    public void createUserPrefix(Long userId){
+        String prefix = constructUserPrefix(userId);
+        minioRepository.putObject(prefix, new ByteArrayInputStream(new byte[0]), 0L);
+        resourceIndexService.markIndexed(userId);
+        storageUsageService.create(userId);
+    }
+
+    public String constructUserPrefix(Long userId){
+        StringBuilder prefix = new StringBuilder();
+        prefix.append(userPrefix);
+        prefix.append(userId);
+        prefix.append(userSuffix);
+        return prefix.toString();
     }
 
 }
@@ -0,0 +1,198 @@
+package org.filestorage.app.service;
+
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.model.PreviewTask;
+import org.filestorage.app.repository.MinioRepository;
+import org.filestorage.app.repository.PreviewTaskRepository;
+import org.filestorage.app.repository.ResourceMetadataRepository;
+import org.filestorage.app.util.ContentTypes;
+import org.filestorage.app.util.CountingInputStream;
+import org.filestorage.app.util.ResourcePath;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates JPEG thumbnails for uploaded images in the background. Tasks are queued in the
+ * preview_tasks table and leased by workers, so they survive restarts and are retried after a crash.
+ */
+@Service
+@RequiredArgsConstructor
+public class PreviewService {
+
+    private static final String PREVIEW_PREFIX = "previews/";
+
+    @Value("${preview.enabled}")
+    private boolean enabled;
+
+    @Value("${preview.size}")
+    private int size;
+
+    @Value("${preview.max-source-size}")
+    private DataSize maxSourceSize;
+
+    @Value("${preview.max-pixels}")
+    private long maxPixels;
+
+    @Value("${preview.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${preview.lease}")
+    private Duration lease;
+
+    @Value("${preview.parallelism}")
+    private int parallelism;
+
+    private final PreviewTaskRepository previewTaskRepository;
+    private final ResourceMetadataRepository resourceMetadataRepository;
+    private final MinioRepository minioRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Qualifier("previewExecutor")
+    private final Executor previewExecutor;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    @Transactional
+    public void enqueue(Long userId, ResourcePath path, String objectKey) {
+        if (enabled && ContentTypes.isPreviewable(path.name())) {
+            previewTaskRepository.enqueue(userId, path.indexKey(), objectKey);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${preview.poll-interval}")
+    public synchronized void poll() {
+        if (!enabled) {
+            return;
+        }
+
+        int free = parallelism - running.get();
+        if (free <= 0) {
+            return;
+        }
+
+        List<PreviewTask> tasks = transactionTemplate.execute(status -> {
+            previewTaskRepository.deleteExhausted(maxAttempts);
+            return previewTaskRepository.claim(free, lease.toSeconds(), maxAttempts);
+        });
+
+        for (PreviewTask task : tasks) {
+            running.incrementAndGet();
+            previewExecutor.execute(() -> {
+                try {
+                    process(task);
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    public static String previewKey(String objectKey) {
+        return PREVIEW_PREFIX + objectKey;
+    }
+
+    private void process(PreviewTask task) {
+        String previewKey = previewKey(task.getObjectKey());
+
+        try {
+            if (!minioRepository.exists(previewKey)) {
+                byte[] thumbnail = render(task.getObjectKey());
+                if (thumbnail == null) {
+                    transactionTemplate.executeWithoutResult(status -> previewTaskRepository.complete(task.getId()));
+                    return;
+                }
+                minioRepository.putObject(previewKey, new ByteArrayInputStream(thumbnail), (long) thumbnail.length);
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                resourceMetadataRepository.markPreview(task.getResourceId());
+                previewTaskRepository.complete(task.getId());
+            });
+        } catch (RuntimeException | IOException e) {
+            if (task.getAttempts() >= maxAttempts) {
+                transactionTemplate.executeWithoutResult(status -> previewTaskRepository.complete(task.getId()));
+            }
+        }
+    }
+
+    /**
+     * Returns the encoded thumbnail, or null if the object is not a readable image within the limits.
+     */
+    private byte[] render(String objectKey) throws IOException {
+        CountingInputStream source = new CountingInputStream(minioRepository.getObject(objectKey), maxSourceSize.toBytes());
+
+        try (source; ImageInputStream imageInput = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    return null;
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (size * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+
+                return encode(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            if (source.isLimitExceeded()) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(thumbnail, "jpg", output);
+        return output.toByteArray();
+    }
+}
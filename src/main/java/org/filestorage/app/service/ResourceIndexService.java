@@ -0,0 +1,297 @@
+package org.filestorage.app.service;
+
+import io.minio.Result;
+import io.minio.messages.Item;
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.exception.ResourceAlreadyExistException;
+import org.filestorage.app.model.ResourceMetadata;
+import org.filestorage.app.repository.MinioRepository;
+import org.filestorage.app.repository.ResourceMetadataRepository;
+import org.filestorage.app.repository.StorageUsageRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+public class ResourceIndexService {
+
+    private final ResourceMetadataRepository resourceMetadataRepository;
+    private final MinioRepository minioRepository;
+    private final StorageUsageRepository storageUsageRepository;
+    private final StorageUsageService storageUsageService;
+    private final BlobService blobService;
+
+    private static final int BATCH_SIZE = 500;
+
+    private final Set<Long> indexedUsers = ConcurrentHashMap.newKeySet();
+
+    public boolean isIndexed(Long userId) {
+        if (indexedUsers.contains(userId)) {
+            return true;
+        }
+
+        boolean indexed = Boolean.TRUE.equals(resourceMetadataRepository.isIndexed(userId));
+        if (indexed) {
+            indexedUsers.add(userId);
+        }
+        return indexed;
+    }
+
+    @Transactional
+    public void markIndexed(Long userId) {
+        resourceMetadataRepository.markIndexed(userId);
+    }
+
+    @Transactional
+    public void rebuild(Long userId, String userPrefix) {
+        Iterable<Result<Item>> results = minioRepository.list(userPrefix, true);
+
+        for (Result<Item> result : results) {
+            Item item = minioRepository.extractItem(result);
+            if (item.objectName().equals(userPrefix)) continue;
+
+            String path = item.objectName().substring(userPrefix.length());
+
+            addAncestors(userId, path);
+            if (path.endsWith("/")) {
+                resourceMetadataRepository.insertDirectory(userId, path, parentOf(path), nameOf(path));
+            } else {
+                insertFile(userId, path, item.size(), item.etag(), null, item.objectName());
+            }
+        }
+
+        storageUsageRepository.recalculate(userId);
+        resourceMetadataRepository.markIndexed(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ResourceMetadata> list(Long userId, String parent) {
+        return resourceMetadataRepository.findByUserIdAndParentOrderByPath(userId, parent);
+    }
+
+    /**
+     * Entries of the directory that sort after the given path, at most limit of them.
+     */
+    @Transactional(readOnly = true)
+    public List<ResourceMetadata> list(Long userId, String parent, String after, int limit) {
+        return resourceMetadataRepository.findPage(userId, parent, after, limit);
+    }
+
+    /**
+     * Passes the directory entries to the action one by one without loading the whole directory.
+     * Entries are read in keyset batches, each in its own short query, so no connection is held
+     * while the action writes to a slow client.
+     */
+    public void forEach(Long userId, String parent, Consumer<ResourceMetadata> action) {
+        String after = "";
+        List<ResourceMetadata> batch;
+        do {
+            batch = resourceMetadataRepository.findPage(userId, parent, after, BATCH_SIZE);
+            after = forEachIn(batch, action, after);
+        } while (batch.size() == BATCH_SIZE);
+    }
+
+    public void forEachByName(Long userId, String query, Consumer<ResourceMetadata> action) {
+        String pattern = "%" + likePrefix(query.toLowerCase(Locale.ROOT));
+        String after = "";
+        List<ResourceMetadata> batch;
+        do {
+            batch = resourceMetadataRepository.searchPage(userId, pattern, after, BATCH_SIZE);
+            after = forEachIn(batch, action, after);
+        } while (batch.size() == BATCH_SIZE);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ResourceMetadata> find(Long userId, String path) {
+        return resourceMetadataRepository.findByUserIdAndPath(userId, path);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean exists(Long userId, String path) {
+        return resourceMetadataRepository.existsByUserIdAndPath(userId, path);
+    }
+
+    /**
+     * Whether the user already has a file with this content.
+     */
+    @Transactional(readOnly = true)
+    public boolean references(Long userId, String blobHash, long size) {
+        return resourceMetadataRepository.existsByUserIdAndBlobHashAndSize(userId, blobHash, size);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ResourceMetadata> filesUnder(Long userId, String directory) {
+        return resourceMetadataRepository.findFilesUnder(userId, likePrefix(directory));
+    }
+
+    /**
+     * First files of the subtree (or the file itself) in path order, at most limit of them.
+     */
+    @Transactional(readOnly = true)
+    public List<ResourceMetadata> files(Long userId, String path, int limit) {
+        if (path.isEmpty() || path.endsWith("/")) {
+            return resourceMetadataRepository.findFilesUnder(userId, likePrefix(path), limit);
+        }
+        return find(userId, path).stream().toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ResourceMetadata> searchByName(Long userId, String query) {
+        return resourceMetadataRepository.searchByName(userId, "%" + likePrefix(query.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Indexes a stored file. Fails with ResourceAlreadyExistException if the path got taken in the meantime
+     * and with QuotaExceededException if the file no longer fits; the caller then owns the stored content
+     * and has to drop it. The quota is checked under the usage lock, so parallel uploads can not overshoot it.
+     */
+    @Transactional
+    public void addFile(Long userId, String path, Long size, String etag, String blobHash, String objectKey) {
+        storageUsageRepository.lock(userId);
+
+        int objects = addAncestors(userId, path);
+        if (insertFile(userId, path, size, etag, blobHash, objectKey) == 0) {
+            throw new ResourceAlreadyExistException("Resource already exists");
+        }
+
+        storageUsageService.checkQuota(userId, sizeOf(size), objects + 1);
+        updateUsage(userId, sizeOf(size), objects + 1);
+    }
+
+    @Transactional
+    public void addDirectory(Long userId, String path) {
+        storageUsageRepository.lock(userId);
+
+        int objects = addAncestors(userId, path);
+        objects += resourceMetadataRepository.insertDirectory(userId, path, parentOf(path), nameOf(path));
+
+        storageUsageService.checkQuota(userId, 0, objects);
+        updateUsage(userId, 0, objects);
+    }
+
+    /**
+     * Moves the entry and everything below it. Legacy rows get their current key pinned first,
+     * so no object has to be copied.
+     */
+    @Transactional
+    public void move(Long userId, String from, String to, String userPrefix) {
+        storageUsageRepository.lock(userId);
+        updateUsage(userId, 0, addAncestors(userId, to));
+
+        if (from.endsWith("/")) {
+            resourceMetadataRepository.pinObjectKeys(userId, likePrefix(from), userPrefix);
+            resourceMetadataRepository.moveSubtree(
+                    userId,
+                    from,
+                    from.codePointCount(0, from.length()),
+                    likePrefix(from),
+                    to,
+                    parentOf(to),
+                    nameOf(to)
+            );
+        } else {
+            resourceMetadataRepository.pinObjectKeys(userId, likeExact(from), userPrefix);
+            resourceMetadataRepository.moveEntry(userId, from, to, parentOf(to), nameOf(to));
+        }
+    }
+
+    /**
+     * Removes the rows of already deleted content and drops their blob references.
+     */
+    @Transactional
+    public void deleteFiles(Long userId, List<ResourceMetadata> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        storageUsageRepository.lock(userId);
+
+        int objects = resourceMetadataRepository.deleteByIds(userId, files.stream().map(ResourceMetadata::getId).toList());
+        long bytes = files.stream().map(ResourceMetadata::getSize).filter(Objects::nonNull).mapToLong(Long::longValue).sum();
+        updateUsage(userId, -bytes, -objects);
+
+        files.stream()
+                .map(ResourceMetadata::getBlobHash)
+                .filter(Objects::nonNull)
+                .forEach(blobService::release);
+    }
+
+    @Transactional
+    public void delete(Long userId, String path) {
+        storageUsageRepository.lock(userId);
+
+        if (path.endsWith("/")) {
+            long bytes = resourceMetadataRepository.sumSizeUnder(userId, likePrefix(path));
+            int objects = resourceMetadataRepository.deleteSubtree(userId, likePrefix(path));
+            updateUsage(userId, -bytes, -objects);
+        } else {
+            long bytes = find(userId, path).map(ResourceMetadata::getSize).orElse(0L);
+            int objects = resourceMetadataRepository.deleteEntry(userId, path);
+            updateUsage(userId, objects > 0 ? -bytes : 0, -objects);
+        }
+    }
+
+    private int addAncestors(Long userId, String path) {
+        int inserted = 0;
+        String parent = parentOf(path);
+        while (!parent.isEmpty()) {
+            inserted += resourceMetadataRepository.insertDirectory(userId, parent, parentOf(parent), nameOf(parent));
+            parent = parentOf(parent);
+        }
+        return inserted;
+    }
+
+    private int insertFile(Long userId, String path, Long size, String etag, String blobHash, String objectKey) {
+        return resourceMetadataRepository.insertFile(userId, path, parentOf(path), nameOf(path), size, etag, blobHash, objectKey);
+    }
+
+    private static String forEachIn(List<ResourceMetadata> batch, Consumer<ResourceMetadata> action, String after) {
+        batch.forEach(action);
+        return batch.isEmpty() ? after : batch.get(batch.size() - 1).getPath();
+    }
+
+    private void updateUsage(Long userId, long bytes, long objects) {
+        if (bytes != 0 || objects != 0) {
+            storageUsageRepository.add(userId, bytes, objects);
+        }
+    }
+
+    private static long sizeOf(Long size) {
+        return size == null ? 0 : size;
+    }
+
+    static String parentOf(String path) {
+        int end = path.endsWith("/") ? path.length() - 1 : path.length();
+        int slashIndex = path.lastIndexOf('/', end - 1);
+        return slashIndex < 0 ? "" : path.substring(0, slashIndex + 1);
+    }
+
+    static String nameOf(String path) {
+        return path.substring(parentOf(path).length());
+    }
+
+    static String likeExact(String path) {
+        String pattern = likePrefix(path);
+        return pattern.substring(0, pattern.length() - 1);
+    }
+
+    static String likePrefix(String path) {
+        StringBuilder pattern = new StringBuilder(path.length() + 1);
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+}
@@ -1,9 +1,47 @@
 package org.filestorage.app.service;
 
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.model.MinioResource;
+import org.filestorage.app.model.ResourceMetadata;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
 public class SearchService {
 
-    //Поиск
-    //
-    //GET /resource/search?query=$query
+    private final MinioService minioService;
+    private final ResourceIndexService resourceIndexService;
+
+    public List<MinioResource> search(Long userId, String query) {
+        minioService.ensureIndexed(userId);
+
+        List<MinioResource> resources = new ArrayList<>();
+
+        for (ResourceMetadata metadata : resourceIndexService.searchByName(userId, query)) {
+            resources.add(toResource(metadata));
+        }
+
+        return resources;
+    }
+
+    public void forEachResult(Long userId, String query, Consumer<MinioResource> action) {
+        minioService.ensureIndexed(userId);
+
+        resourceIndexService.forEachByName(userId, query, metadata -> action.accept(toResource(metadata)));
+    }
+
+    private static MinioResource toResource(ResourceMetadata metadata) {
+        return new MinioResource(
+                metadata.getParent().isEmpty() ? "/" : metadata.getParent(),
+                metadata.getName(),
+                metadata.getSize(),
+                metadata.getType(),
+                metadata.isHasPreview()
+        );
+    }
 
 }
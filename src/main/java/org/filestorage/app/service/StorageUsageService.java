@@ -0,0 +1,74 @@
+package org.filestorage.app.service;
+
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.dto.StorageUsageResponse;
+import org.filestorage.app.exception.QuotaExceededException;
+import org.filestorage.app.model.StorageUsage;
+import org.filestorage.app.repository.StorageUsageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Tracks storage usage per user. Quota limits are opt-in: a limit of 0 means unlimited.
+ */
+@Service
+@RequiredArgsConstructor
+public class StorageUsageService {
+
+    @Value("${storage.quota.max-bytes}")
+    private DataSize maxBytes;
+
+    @Value("${storage.quota.max-objects}")
+    private long maxObjects;
+
+    private final StorageUsageRepository storageUsageRepository;
+
+    @Transactional
+    public void create(Long userId) {
+        storageUsageRepository.add(userId, 0, 0);
+    }
+
+    @Transactional(readOnly = true)
+    public StorageUsageResponse getUsage(Long userId) {
+        StorageUsage usage = find(userId);
+        return new StorageUsageResponse(
+                usage.getBytes(),
+                usage.getObjects(),
+                maxBytes.toBytes() > 0 ? maxBytes.toBytes() : null,
+                maxObjects > 0 ? maxObjects : null
+        );
+    }
+
+    /**
+     * Bytes the user can still store, never negative.
+     */
+    @Transactional(readOnly = true)
+    public long remainingBytes(Long userId) {
+        if (maxBytes.toBytes() <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, maxBytes.toBytes() - find(userId).getBytes());
+    }
+
+    /**
+     * Checks that adding the given amount of bytes and objects keeps the user within the quota.
+     */
+    @Transactional(readOnly = true)
+    public void checkQuota(Long userId, long bytes, long objects) {
+        StorageUsage usage = find(userId);
+
+        if (maxBytes.toBytes() > 0 && usage.getBytes() + bytes > maxBytes.toBytes()) {
+            throw new QuotaExceededException("Storage quota of " + maxBytes.toBytes() + " bytes exceeded");
+        }
+
+        if (maxObjects > 0 && usage.getObjects() + objects > maxObjects) {
+            throw new QuotaExceededException("Storage quota of " + maxObjects + " objects exceeded");
+        }
+    }
+
+    private StorageUsage find(Long userId) {
+        return storageUsageRepository.findById(userId).orElseGet(() -> new StorageUsage(userId, 0L, 0L));
+    }
+}
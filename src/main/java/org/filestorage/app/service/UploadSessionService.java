@@ -0,0 +1,260 @@
+package org.filestorage.app.service;
+
+import com.google.common.io.ByteStreams;
+import io.minio.ObjectWriteResponse;
+import io.minio.messages.Part;
+import io.minio.messages.Upload;
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.dto.UploadSessionResponse;
+import org.filestorage.app.exception.ChunkNotValidException;
+import org.filestorage.app.exception.MinioOperationException;
+import org.filestorage.app.exception.PathNotValidException;
+import org.filestorage.app.exception.ResourceAlreadyExistException;
+import org.filestorage.app.exception.ResourceNotFoundException;
+import org.filestorage.app.exception.ResourceSizeException;
+import org.filestorage.app.model.MinioResource;
+import org.filestorage.app.repository.MinioRepository;
+import org.filestorage.app.util.ResourcePath;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class UploadSessionService {
+
+    private static final String SESSION_KEY = "upload-session:";
+    private static final String PARTS_SUFFIX = ":parts";
+    private static final String UPLOAD_KEY = "upload-session-upload:";
+
+    @Value("${minio.upload.part-size}")
+    private DataSize chunkSize;
+
+    @Value("${minio.upload.stream.max-file-size}")
+    private DataSize maxFileSize;
+
+    @Value("${minio.upload.session.ttl}")
+    private Duration sessionTtl;
+
+    private final StringRedisTemplate redisTemplate;
+    private final MinioRepository minioRepository;
+    private final MinioService minioService;
+    private final StorageUsageService storageUsageService;
+    private final PreviewService previewService;
+
+    public UploadSessionResponse create(ResourcePath path, Long size, Long userId) {
+        if (path.isDirectory()) {
+            throw new PathNotValidException("Name should not end with /");
+        }
+
+        if (size == null || size <= 0) {
+            throw new ChunkNotValidException("Upload size should be positive");
+        }
+
+        if (size > maxFileSize.toBytes()) {
+            throw new ResourceSizeException("File " + path.name() + " is too large");
+        }
+
+        String objectKey = minioService.newObjectKey(userId);
+
+        if (minioService.exists(path, userId)) {
+            throw new ResourceAlreadyExistException("Resource already exists");
+        }
+
+        storageUsageService.checkQuota(userId, size, 1);
+
+        String uploadId = minioRepository.createMultipartUpload(objectKey);
+        String id = UUID.randomUUID().toString();
+
+        Map<String, String> session = new HashMap<>();
+        session.put("userId", String.valueOf(userId));
+        session.put("path", path.parent());
+        session.put("name", path.name());
+        session.put("resourcePath", path.value());
+        session.put("objectKey", objectKey);
+        session.put("uploadId", uploadId);
+        session.put("size", String.valueOf(size));
+        session.put("chunkSize", String.valueOf(chunkSize.toBytes()));
+
+        redisTemplate.opsForHash().putAll(SESSION_KEY + id, session);
+        redisTemplate.expire(SESSION_KEY + id, sessionTtl);
+        redisTemplate.opsForValue().set(UPLOAD_KEY + uploadId, id, sessionTtl);
+
+        return toResponse(id, session, Map.of());
+    }
+
+    public UploadSessionResponse get(String id, Long userId) {
+        Map<String, String> session = load(id, userId);
+        return toResponse(id, session, loadParts(id));
+    }
+
+    public UploadSessionResponse uploadChunk(String id, int number, InputStream input, Long userId) {
+        Map<String, String> session = load(id, userId);
+
+        long size = Long.parseLong(session.get("size"));
+        long sessionChunkSize = Long.parseLong(session.get("chunkSize"));
+        int chunkCount = chunkCount(size, sessionChunkSize);
+
+        if (number < 1 || number > chunkCount) {
+            throw new ChunkNotValidException("Chunk number should be between 1 and " + chunkCount);
+        }
+
+        long expectedLength = number < chunkCount ? sessionChunkSize : size - sessionChunkSize * (chunkCount - 1);
+
+        String etag = uploadPart(session, number, input, expectedLength);
+
+        redisTemplate.opsForHash().put(SESSION_KEY + id + PARTS_SUFFIX, String.valueOf(number), etag);
+        redisTemplate.expire(SESSION_KEY + id, sessionTtl);
+        redisTemplate.expire(SESSION_KEY + id + PARTS_SUFFIX, sessionTtl);
+        redisTemplate.expire(UPLOAD_KEY + session.get("uploadId"), sessionTtl);
+
+        return toResponse(id, session, loadParts(id));
+    }
+
+    public MinioResource complete(String id, Long userId) {
+        Map<String, String> session = load(id, userId);
+        Map<Integer, String> parts = loadParts(id);
+
+        long size = Long.parseLong(session.get("size"));
+        int chunkCount = chunkCount(size, Long.parseLong(session.get("chunkSize")));
+
+        if (parts.size() != chunkCount) {
+            throw new ChunkNotValidException("Upload is incomplete: " + parts.size() + " of " + chunkCount + " chunks received");
+        }
+
+        ResourcePath resourcePath = ResourcePath.parse(session.get("resourcePath"));
+        if (minioService.exists(resourcePath, userId)) {
+            throw new ResourceAlreadyExistException("Resource already exists");
+        }
+
+        Part[] minioParts = parts.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(part -> new Part(part.getKey(), part.getValue()))
+                .toArray(Part[]::new);
+
+        ObjectWriteResponse response = minioRepository.completeMultipartUpload(session.get("objectKey"), session.get("uploadId"), minioParts);
+
+        try {
+            minioService.addStoredFile(resourcePath, userId, size, response.etag(), null, session.get("objectKey"));
+        } finally {
+            delete(id, session);
+        }
+        previewService.enqueue(userId, resourcePath, session.get("objectKey"));
+
+        return minioService.getResource(resourcePath, userId);
+    }
+
+    public void abort(String id, Long userId) {
+        Map<String, String> session = load(id, userId);
+
+        minioRepository.abortMultipartUpload(session.get("objectKey"), session.get("uploadId"));
+        delete(id, session);
+    }
+
+    /**
+     * Aborts multipart uploads of sessions that expired in Redis, so abandoned parts do not stay in the bucket.
+     */
+    @Scheduled(fixedDelayString = "${minio.upload.session.cleanup-interval}")
+    public void abortExpired() {
+        Instant expired = Instant.now().minus(sessionTtl);
+
+        for (Upload upload : minioRepository.listIncompleteUploads(MinioService.OBJECT_PREFIX)) {
+            if (upload.initiated().toInstant().isBefore(expired)
+                    && !Boolean.TRUE.equals(redisTemplate.hasKey(UPLOAD_KEY + upload.uploadId()))) {
+                try {
+                    minioRepository.abortMultipartUpload(upload.objectName(), upload.uploadId());
+                } catch (MinioOperationException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Spools the chunk to a temp file while checking its length, then uploads it from there.
+     */
+    private String uploadPart(Map<String, String> session, int number, InputStream input, long expectedLength) {
+        Path chunk = null;
+        try {
+            chunk = Files.createTempFile("chunk-", ".part");
+
+            long length;
+            try (OutputStream output = Files.newOutputStream(chunk)) {
+                length = ByteStreams.limit(input, expectedLength + 1).transferTo(output);
+            }
+            if (length != expectedLength) {
+                throw new ChunkNotValidException("Chunk " + number + " should be " + expectedLength + " bytes long");
+            }
+
+            try (RandomAccessFile data = new RandomAccessFile(chunk.toFile(), "r")) {
+                return minioRepository.uploadPart(session.get("objectKey"), session.get("uploadId"), number, data, length);
+            }
+        } catch (IOException e) {
+            throw new MinioOperationException("Error reading chunk " + number, e);
+        } finally {
+            if (chunk != null) {
+                chunk.toFile().delete();
+            }
+        }
+    }
+
+    private void delete(String id, Map<String, String> session) {
+        redisTemplate.delete(List.of(SESSION_KEY + id, SESSION_KEY + id + PARTS_SUFFIX, UPLOAD_KEY + session.get("uploadId")));
+    }
+
+    private Map<String, String> load(String id, Long userId) {
+        Map<String, String> session = redisTemplate.<String, String>opsForHash().entries(SESSION_KEY + id);
+
+        if (session.isEmpty() || !String.valueOf(userId).equals(session.get("userId"))) {
+            throw new ResourceNotFoundException("Upload session " + id + " not found");
+        }
+
+        return session;
+    }
+
+    private Map<Integer, String> loadParts(String id) {
+        Map<Integer, String> parts = new HashMap<>();
+        redisTemplate.<String, String>opsForHash()
+                .entries(SESSION_KEY + id + PARTS_SUFFIX)
+                .forEach((number, etag) -> parts.put(Integer.parseInt(number), etag));
+        return parts;
+    }
+
+    private UploadSessionResponse toResponse(String id, Map<String, String> session, Map<Integer, String> parts) {
+        long size = Long.parseLong(session.get("size"));
+        long sessionChunkSize = Long.parseLong(session.get("chunkSize"));
+
+        int contiguous = 0;
+        while (parts.containsKey(contiguous + 1)) {
+            contiguous++;
+        }
+
+        return new UploadSessionResponse(
+                id,
+                session.get("path"),
+                session.get("name"),
+                size,
+                sessionChunkSize,
+                Math.min(size, contiguous * sessionChunkSize),
+                parts.keySet().stream().sorted().toList()
+        );
+    }
+
+    private static int chunkCount(long size, long chunkSize) {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+}
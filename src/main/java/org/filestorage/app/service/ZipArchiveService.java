@@ -0,0 +1,133 @@
+package org.filestorage.app.service;
+
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.model.ArchiveEntry;
+import org.filestorage.app.repository.MinioRepository;
+import org.filestorage.app.util.ContentTypes;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Service
+@RequiredArgsConstructor
+public class ZipArchiveService {
+
+    @Value("${minio.zip.prefetch}")
+    private int prefetch;
+
+    @Value("${minio.zip.inline-size}")
+    private DataSize inlineSize;
+
+    private final MinioRepository minioRepository;
+
+    @Qualifier("zipExecutor")
+    private final Executor zipExecutor;
+
+    public void write(OutputStream outputStream, Iterable<ArchiveEntry> entries) throws IOException {
+        Iterator<ArchiveEntry> items = entries.iterator();
+        Deque<CompletableFuture<ZipSource>> window = new ArrayDeque<>(prefetch);
+
+        try (ZipOutputStream zipOut = new ZipOutputStream(outputStream)) {
+            fill(window, items);
+
+            while (!window.isEmpty()) {
+                ZipSource source = join(window.poll());
+                fill(window, items);
+                writeEntry(zipOut, source);
+            }
+        } finally {
+            window.forEach(pending -> pending.thenAccept(ZipSource::close));
+        }
+    }
+
+    private void fill(Deque<CompletableFuture<ZipSource>> window, Iterator<ArchiveEntry> items) {
+        while (window.size() < prefetch && items.hasNext()) {
+            ArchiveEntry item = items.next();
+            window.add(CompletableFuture.supplyAsync(() -> open(item), zipExecutor));
+        }
+    }
+
+    private ZipSource open(ArchiveEntry item) {
+        String entryName = item.name();
+        boolean compressed = ContentTypes.isCompressed(entryName);
+        InputStream input = minioRepository.getObject(item.objectKey());
+
+        if (item.size() > inlineSize.toBytes()) {
+            return new ZipSource(entryName, compressed, null, 0, input);
+        }
+
+        try (input) {
+            byte[] data = input.readAllBytes();
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            return new ZipSource(entryName, compressed, data, crc.getValue(), null);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zipOut, ZipSource source) throws IOException {
+        ZipEntry entry = new ZipEntry(source.entryName());
+
+        try (source) {
+            if (source.data() != null && source.compressed()) {
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(source.data().length);
+                entry.setCompressedSize(source.data().length);
+                entry.setCrc(source.crc());
+                zipOut.putNextEntry(entry);
+                zipOut.write(source.data());
+            } else {
+                zipOut.setLevel(source.compressed() ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                zipOut.putNextEntry(entry);
+                if (source.data() != null) {
+                    zipOut.write(source.data());
+                } else {
+                    source.input().transferTo(zipOut);
+                }
+            }
+            zipOut.closeEntry();
+        }
+    }
+
+    private ZipSource join(CompletableFuture<ZipSource> pending) throws IOException {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record ZipSource(String entryName, boolean compressed, byte[] data, long crc, InputStream input) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            if (input == null) return;
+            try {
+                input.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
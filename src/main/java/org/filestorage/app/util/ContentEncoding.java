@@ -0,0 +1,98 @@
+package org.filestorage.app.util;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+public enum ContentEncoding {
+
+    ZSTD("zstd"),
+    GZIP("gzip");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    /**
+     * Wraps the response stream into an encoder. Closing the encoder finishes the encoded stream
+     * but leaves the response stream open.
+     */
+    public OutputStream wrap(OutputStream outputStream, int zstdLevel) throws IOException {
+        OutputStream target = StreamUtils.nonClosing(outputStream);
+
+        return switch (this) {
+            case ZSTD -> new ZstdOutputStream(target, zstdLevel);
+            case GZIP -> new GZIPOutputStream(target, BUFFER_SIZE);
+        };
+    }
+
+    /**
+     * Picks the preferred encoding from an Accept-Encoding header, or null if none of the supported ones is acceptable.
+     * On equal weight zstd wins.
+     */
+    public static ContentEncoding negotiate(String acceptEncoding, boolean zstdAvailable) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+
+        ContentEncoding best = null;
+        double bestWeight = 0;
+        double wildcardWeight = -1;
+        double[] weights = {-1, -1};
+
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String name = tokens[0].trim().toLowerCase(Locale.ROOT);
+            double weight = weight(tokens);
+
+            if (name.equals("*")) {
+                wildcardWeight = weight;
+            }
+            for (ContentEncoding encoding : values()) {
+                if (name.equals(encoding.token) || (encoding == GZIP && name.equals("x-gzip"))) {
+                    weights[encoding.ordinal()] = weight;
+                }
+            }
+        }
+
+        for (ContentEncoding encoding : values()) {
+            if (encoding == ZSTD && !zstdAvailable) {
+                continue;
+            }
+            double weight = weights[encoding.ordinal()] >= 0 ? weights[encoding.ordinal()] : wildcardWeight;
+            if (weight > bestWeight) {
+                best = encoding;
+                bestWeight = weight;
+            }
+        }
+
+        return best;
+    }
+
+    private static double weight(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String parameter = tokens[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+}
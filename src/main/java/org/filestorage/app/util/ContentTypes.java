@@ -0,0 +1,37 @@
+package org.filestorage.app.util;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.util.Set;
+
+public class ContentTypes {
+
+    private static final Set<String> COMPRESSED_SUBTYPES = Set.of(
+            "jpeg", "png", "gif", "webp", "avif", "heic",
+            "zip", "gzip", "x-gzip", "x-7z-compressed", "vnd.rar", "x-rar-compressed",
+            "x-bzip2", "x-xz", "zstd", "java-archive", "pdf",
+            "vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "vnd.openxmlformats-officedocument.presentationml.presentation"
+    );
+
+    private static final Set<String> PREVIEW_SUBTYPES = Set.of("jpeg", "png", "gif", "bmp");
+
+    public static MediaType of(String name) {
+        return MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    public static boolean isCompressed(String name) {
+        MediaType type = of(name);
+        return type.getType().equals("video")
+                || type.getType().equals("audio")
+                || COMPRESSED_SUBTYPES.contains(type.getSubtype());
+    }
+
+    public static boolean isPreviewable(String name) {
+        MediaType type = of(name);
+        return type.getType().equals("image") && PREVIEW_SUBTYPES.contains(type.getSubtype());
+    }
+
+}
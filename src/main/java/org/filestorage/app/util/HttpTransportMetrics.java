@@ -0,0 +1,77 @@
+package org.filestorage.app.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool and dispatcher metrics of the MinIO HTTP client. For every call it records whether
+ * the connection was reused or newly opened and how long the call waited for it, including the time
+ * spent queued in the dispatcher.
+ */
+public class HttpTransportMetrics implements EventListener.Factory {
+
+    private final Counter reusedConnections;
+    private final Counter newConnections;
+    private final Timer acquireTimer;
+
+    public HttpTransportMetrics(MeterRegistry meterRegistry, ConnectionPool connectionPool, Dispatcher dispatcher) {
+        this.reusedConnections = meterRegistry.counter("minio.http.connections.acquired", "connection", "reused");
+        this.newConnections = meterRegistry.counter("minio.http.connections.acquired", "connection", "new");
+        this.acquireTimer = Timer.builder("minio.http.connections.acquire")
+                .description("Time from the start of a call until it got a connection")
+                .register(meterRegistry);
+
+        Gauge.builder("minio.http.pool.connections", connectionPool, ConnectionPool::connectionCount)
+                .tag("state", "total")
+                .register(meterRegistry);
+        Gauge.builder("minio.http.pool.connections", connectionPool, ConnectionPool::idleConnectionCount)
+                .tag("state", "idle")
+                .register(meterRegistry);
+        Gauge.builder("minio.http.dispatcher.calls", dispatcher, Dispatcher::runningCallsCount)
+                .tag("state", "running")
+                .register(meterRegistry);
+        Gauge.builder("minio.http.dispatcher.calls", dispatcher, Dispatcher::queuedCallsCount)
+                .tag("state", "queued")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallListener();
+    }
+
+    private class CallListener extends EventListener {
+
+        private long start;
+        private boolean connected;
+
+        @Override
+        public void callStart(Call call) {
+            start = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connected = true;
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            (connected ? newConnections : reusedConnections).increment();
+            connected = false;
+            start = System.nanoTime();
+        }
+    }
+}
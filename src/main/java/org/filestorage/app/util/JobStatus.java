@@ -0,0 +1,12 @@
+package org.filestorage.app.util;
+
+
+public enum JobStatus {
+
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+
+}
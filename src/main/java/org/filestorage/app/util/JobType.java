@@ -0,0 +1,10 @@
+package org.filestorage.app.util;
+
+
+public enum JobType {
+
+    DELETE,
+    MOVE,
+    ARCHIVE
+
+}
@@ -0,0 +1,118 @@
+package org.filestorage.app.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class MinioMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter uploadedBytes;
+    private final Counter downloadedBytes;
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+
+    public MinioMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.uploadedBytes = Counter.builder("minio.transfer.bytes")
+                .description("Bytes transferred to and from MinIO")
+                .baseUnit("bytes")
+                .tag("direction", "upload")
+                .register(meterRegistry);
+        this.downloadedBytes = Counter.builder("minio.transfer.bytes")
+                .description("Bytes transferred to and from MinIO")
+                .baseUnit("bytes")
+                .tag("direction", "download")
+                .register(meterRegistry);
+        Gauge.builder("minio.transfers.active", activeTransfers, AtomicInteger::get)
+                .description("Download responses currently being streamed")
+                .register(meterRegistry);
+    }
+
+    public <T> T record(String operation, MinioCall<T> call) throws Exception {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.execute();
+            outcome = "success";
+            return result;
+        } finally {
+            timer(operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public InputStream countUpload(InputStream input) {
+        return new MeteredInputStream(input, uploadedBytes);
+    }
+
+    public InputStream countDownload(InputStream input) {
+        return new MeteredInputStream(input, downloadedBytes);
+    }
+
+    public void addUploaded(long bytes) {
+        uploadedBytes.increment(bytes);
+    }
+
+    public StreamingResponseBody track(StreamingResponseBody body) {
+        return outputStream -> {
+            activeTransfers.incrementAndGet();
+            try {
+                body.writeTo(outputStream);
+            } finally {
+                activeTransfers.decrementAndGet();
+            }
+        };
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder("minio.requests")
+                .description("MinIO operation latency")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface MinioCall<T> {
+        T execute() throws Exception;
+    }
+
+    private static class MeteredInputStream extends FilterInputStream {
+
+        private final Counter counter;
+
+        MeteredInputStream(InputStream in, Counter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                counter.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.increment(n);
+            }
+            return n;
+        }
+    }
+}
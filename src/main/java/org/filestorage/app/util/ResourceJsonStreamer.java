@@ -0,0 +1,85 @@
+package org.filestorage.app.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import org.filestorage.app.exception.QueryNotValidException;
+import org.filestorage.app.mapper.ResourceDataResponseMapper;
+import org.filestorage.app.model.MinioResource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Writes resources to the response one by one as they are read, either as a JSON array or as NDJSON.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResourceJsonStreamer {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final int FLUSH_EVERY = 100;
+
+    private final ObjectMapper objectMapper;
+    private final ResourceDataResponseMapper resourceDataResponseMapper;
+
+    public enum Format {
+        JSON,
+        NDJSON;
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new QueryNotValidException("Stream format should be json or ndjson");
+            }
+        }
+
+        public MediaType mediaType() {
+            return this == NDJSON ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON;
+        }
+    }
+
+    public StreamingResponseBody stream(Format format, Consumer<Consumer<MinioResource>> source) {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                if (format == Format.JSON) {
+                    generator.writeStartArray();
+                } else {
+                    generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+                }
+
+                int[] written = {0};
+                source.accept(resource -> {
+                    try {
+                        writer.writeValue(generator, resourceDataResponseMapper.toResponse(resource));
+                        if (++written[0] % FLUSH_EVERY == 1) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                if (format == Format.JSON) {
+                    generator.writeEndArray();
+                } else if (written[0] > 0) {
+                    generator.writeRaw('\n');
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+}
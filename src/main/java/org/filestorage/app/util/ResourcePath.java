@@ -0,0 +1,255 @@
+package org.filestorage.app.util;
+
+import org.filestorage.app.exception.PathNotValidException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parsed, validated path of a resource relative to the user's storage prefix.
+ * Directories end with "/", the root directory is "/".
+ */
+public final class ResourcePath {
+
+    public static final ResourcePath ROOT = new ResourcePath("/", 0, 0);
+
+    private final String value;
+    private final int nameStart;
+    private final int depth;
+
+    private ResourcePath(String value, int nameStart, int depth) {
+        this.value = value;
+        this.nameStart = nameStart;
+        this.depth = depth;
+    }
+
+    /**
+     * Decodes a client supplied path (URL encoding, control characters, one leading slash)
+     * and validates it in a single pass.
+     */
+    public static ResourcePath parse(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return ROOT;
+        }
+
+        int start = raw.length() != 1 && raw.charAt(0) == '/' ? 1 : 0;
+        return validate(needsDecoding(raw, start) ? decode(raw, start) : raw.substring(start), 0, 0, 0);
+    }
+
+    /**
+     * Appends an encoded client supplied name (a file name or a relative path) and validates the appended part.
+     */
+    public ResourcePath resolve(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            throw new PathNotValidException("Path not valid");
+        }
+
+        String child = needsDecoding(raw, 0) ? decode(raw, 0) : raw;
+        return isRoot() ? validate(child, 0, 0, 0) : validate(value + child, value.length(), value.length(), depth);
+    }
+
+    /**
+     * Appends a name that is not subject to character validation, e.g. the original file name of a multipart part.
+     * Only empty, "." and ".." segments are rejected.
+     */
+    public ResourcePath append(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new PathNotValidException("Path not valid");
+        }
+
+        String path = isRoot() ? name : value + name;
+        int from = isRoot() ? 0 : value.length();
+        int nameStart = from;
+        int segmentStart = from;
+        int segments = depth;
+
+        for (int i = from; i < path.length(); i++) {
+            if (path.charAt(i) == '/') {
+                checkSegment(path, segmentStart, i, false);
+                segments++;
+                if (i != path.length() - 1) {
+                    nameStart = i + 1;
+                }
+                segmentStart = i + 1;
+            }
+        }
+
+        if (segmentStart < path.length()) {
+            checkSegment(path, segmentStart, path.length(), false);
+        }
+
+        if (path.charAt(path.length() - 1) != '/') {
+            segments++;
+        }
+
+        return new ResourcePath(path, nameStart, segments);
+    }
+
+    public boolean isRoot() {
+        return depth == 0;
+    }
+
+    public boolean isDirectory() {
+        return value.charAt(value.length() - 1) == '/';
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Last segment; directory names keep their trailing slash, the root is named "/".
+     */
+    public String name() {
+        return isRoot() ? value : value.substring(nameStart);
+    }
+
+    /**
+     * Directory containing this resource in the API form, "/" for top level resources.
+     */
+    public String parent() {
+        return nameStart == 0 ? "/" : value.substring(0, nameStart);
+    }
+
+    public boolean contains(ResourcePath other) {
+        return isDirectory() && (isRoot() || other.value.startsWith(value));
+    }
+
+    /**
+     * Path as stored in the resource index, where the root is the empty string.
+     */
+    public String indexKey() {
+        return isRoot() ? "" : value;
+    }
+
+    public String userKey(String userPrefix) {
+        return isRoot() ? userPrefix : userPrefix + value;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof ResourcePath other && value.equals(other.value));
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    private static ResourcePath validate(String path, int from, int nameStart, int depth) {
+        if (path.equals("/")) {
+            return ROOT;
+        }
+
+        int length = path.length();
+        if (length == from) {
+            throw new PathNotValidException("Path not valid");
+        }
+
+        int segmentStart = from;
+        boolean blank = true;
+
+        for (int i = from; i < length; ) {
+            int c = path.codePointAt(i);
+
+            if (c == '/') {
+                checkSegment(path, segmentStart, i, blank);
+                depth++;
+                if (i != length - 1) {
+                    nameStart = i + 1;
+                }
+                segmentStart = i + 1;
+                blank = true;
+            } else if (isAllowed(c)) {
+                blank &= c == ' ';
+            } else {
+                throw new PathNotValidException("Path not valid");
+            }
+
+            i += Character.charCount(c);
+        }
+
+        if (segmentStart < length) {
+            checkSegment(path, segmentStart, length, blank);
+            depth++;
+        }
+
+        return new ResourcePath(path, nameStart, depth);
+    }
+
+    private static void checkSegment(String path, int start, int end, boolean blank) {
+        int length = end - start;
+        if (length == 0 || blank
+                || (path.charAt(start) == '.' && (length == 1 || (length == 2 && path.charAt(start + 1) == '.')))) {
+            throw new PathNotValidException("Path not valid");
+        }
+    }
+
+    private static boolean isAllowed(int c) {
+        return (c >= '0' && c <= '9') || c == '.' || c == '_' || c == '-' || c == ' ' || Character.isLetter(c);
+    }
+
+    private static boolean needsDecoding(String raw, int start) {
+        for (int i = start; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '%' || c == '+' || c < 32 || c == 127) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String decode(String raw, int start) {
+        StringBuilder decoded = new StringBuilder(raw.length() - start);
+        byte[] bytes = null;
+
+        for (int i = start; i < raw.length(); ) {
+            char c = raw.charAt(i);
+
+            if (c == '%') {
+                if (bytes == null) {
+                    bytes = new byte[(raw.length() - i) / 3];
+                }
+                int count = 0;
+                while (i + 2 < raw.length() && raw.charAt(i) == '%') {
+                    int high = Character.digit(raw.charAt(i + 1), 16);
+                    int low = Character.digit(raw.charAt(i + 2), 16);
+                    if (high < 0 || low < 0) {
+                        throw new PathNotValidException("Path not valid");
+                    }
+                    bytes[count++] = (byte) ((high << 4) + low);
+                    i += 3;
+                }
+                if (i < raw.length() && raw.charAt(i) == '%') {
+                    throw new PathNotValidException("Path not valid");
+                }
+                appendVisible(decoded, new String(bytes, 0, count, StandardCharsets.UTF_8));
+            } else {
+                appendVisible(decoded, c == '+' ? ' ' : c);
+                i++;
+            }
+        }
+
+        return decoded.toString();
+    }
+
+    private static void appendVisible(StringBuilder target, String chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            appendVisible(target, chars.charAt(i));
+        }
+    }
+
+    private static void appendVisible(StringBuilder target, char c) {
+        if (c >= 32 && c != 127) {
+            target.append(c);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.filestorage.app.util;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.util.Native;
+import jakarta.annotation.PostConstruct;
+import okhttp3.Headers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Map;
+
+/**
+ * Optional at-rest compression of stored objects. Objects are compressed with zstd while they are uploaded
+ * if a sample of their content compresses well; the codec and, when known, the original size are kept
+ * in the object user metadata, and reads are decoded transparently.
+ */
+@Component
+public class StorageCodec {
+
+    public static final String CODEC_ZSTD = "zstd";
+
+    private static final String CODEC_METADATA = "codec";
+    private static final String ORIGINAL_SIZE_METADATA = "original-size";
+    private static final String METADATA_HEADER_PREFIX = "x-amz-meta-";
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${storage.codec.enabled}")
+    private boolean enabled;
+
+    @Value("${storage.codec.min-size}")
+    private DataSize minSize;
+
+    @Value("${storage.codec.level}")
+    private int level;
+
+    @Value("${storage.codec.max-ratio}")
+    private double maxRatio;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            Native.load();
+        } catch (UnsatisfiedLinkError e) {
+            enabled = false;
+        }
+    }
+
+    /**
+     * Returns the stream to upload instead of the input. Size is -1 for unknown, and stays unknown
+     * for compressed content.
+     */
+    public Encoded encode(InputStream input, long size) throws IOException {
+        if (!enabled || (size >= 0 && size < minSize.toBytes())) {
+            return new Encoded(input, size, Map.of());
+        }
+
+        byte[] sample = input.readNBytes(SAMPLE_SIZE);
+        InputStream content = new SequenceInputStream(new ByteArrayInputStream(sample), input);
+
+        boolean small = sample.length < SAMPLE_SIZE && sample.length < minSize.toBytes();
+        if (small || Zstd.compress(sample, level).length > sample.length * maxRatio) {
+            return new Encoded(content, size, Map.of());
+        }
+
+        Map<String, String> metadata = size >= 0
+                ? Map.of(CODEC_METADATA, CODEC_ZSTD, ORIGINAL_SIZE_METADATA, Long.toString(size))
+                : Map.of(CODEC_METADATA, CODEC_ZSTD);
+
+        return new Encoded(new ZstdCompressingInputStream(content, level), -1, metadata);
+    }
+
+    public InputStream decode(Headers headers, InputStream stored) throws IOException {
+        if (!isEncoded(headers)) {
+            return stored;
+        }
+        return new ZstdInputStream(new BufferedInputStream(stored, BUFFER_SIZE));
+    }
+
+    public static boolean isEncoded(Headers headers) {
+        return CODEC_ZSTD.equals(headers.get(METADATA_HEADER_PREFIX + CODEC_METADATA));
+    }
+
+    /**
+     * Size of the object as it was uploaded, or null if it is compressed and the size was not known at upload.
+     */
+    public static Long originalSize(Headers headers, long storedSize) {
+        if (!isEncoded(headers)) {
+            return storedSize;
+        }
+
+        String originalSize = headers.get(METADATA_HEADER_PREFIX + ORIGINAL_SIZE_METADATA);
+        return originalSize != null ? Long.parseLong(originalSize) : null;
+    }
+
+    public record Encoded(InputStream stream, long size, Map<String, String> metadata) {
+    }
+}
@@ -0,0 +1,83 @@
+package org.filestorage.app.util;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the source and returns it zstd-compressed, encoding one chunk at a time,
+ * so only a chunk of input and the encoder window are held in memory.
+ */
+public class ZstdCompressingInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream source;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream(CHUNK_SIZE);
+    private final ZstdOutputStream encoder;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    private byte[] pending = new byte[0];
+    private int position;
+    private boolean finished;
+
+    public ZstdCompressingInputStream(InputStream source, int level) throws IOException {
+        this.source = source;
+        this.encoder = new ZstdOutputStream(encoded, level);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return pending[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        int n = Math.min(len, pending.length - position);
+        System.arraycopy(pending, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            encoder.close();
+        } finally {
+            source.close();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        while (position == pending.length) {
+            if (finished) {
+                return false;
+            }
+
+            int read = source.read(chunk);
+            if (read == -1) {
+                encoder.close();
+                finished = true;
+            } else {
+                encoder.write(chunk, 0, read);
+            }
+
+            pending = encoded.toByteArray();
+            encoded.reset();
+            position = 0;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,7 @@
+ALTER TABLE jobs ADD COLUMN target TEXT;
+ALTER TABLE jobs ADD COLUMN result TEXT;
+ALTER TABLE jobs ADD COLUMN cancel_requested BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE jobs ADD COLUMN attempts INT NOT NULL DEFAULT 0;
+ALTER TABLE jobs ADD COLUMN locked_until TIMESTAMPTZ;
+
+CREATE INDEX jobs_active_idx ON jobs (created_at) WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,8 @@
+CREATE TABLE archive_cache (
+    fingerprint VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    last_access TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX archive_cache_last_access_idx ON archive_cache (last_access);
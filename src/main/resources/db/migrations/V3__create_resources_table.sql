@@ -0,0 +1,16 @@
+CREATE TABLE resources (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    path TEXT NOT NULL,
+    parent TEXT NOT NULL,
+    name TEXT NOT NULL,
+    size BIGINT,
+    type VARCHAR(16) NOT NULL,
+    etag VARCHAR(255),
+    UNIQUE (user_id, path)
+);
+
+CREATE INDEX resources_user_parent_idx ON resources (user_id, parent, path);
+CREATE INDEX resources_user_path_prefix_idx ON resources (user_id, path text_pattern_ops);
+
+ALTER TABLE users ADD COLUMN resources_indexed BOOLEAN NOT NULL DEFAULT FALSE;
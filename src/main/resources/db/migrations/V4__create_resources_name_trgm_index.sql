@@ -0,0 +1,3 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm WITH SCHEMA public;
+
+CREATE INDEX resources_name_trgm_idx ON resources USING gin (lower(name) public.gin_trgm_ops);
@@ -0,0 +1,9 @@
+CREATE TABLE blobs (
+    hash VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    ref_count BIGINT NOT NULL
+);
+
+ALTER TABLE resources ADD COLUMN blob_hash VARCHAR(64) REFERENCES blobs(hash);
+
+CREATE INDEX resources_blob_hash_idx ON resources (blob_hash) WHERE blob_hash IS NOT NULL;
@@ -0,0 +1,2 @@
+-- NULL means the content still lives at the legacy per-user key derived from the path
+ALTER TABLE resources ADD COLUMN object_key TEXT;
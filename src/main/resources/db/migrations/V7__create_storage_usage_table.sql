@@ -0,0 +1,10 @@
+CREATE TABLE storage_usage (
+    user_id BIGINT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    bytes BIGINT NOT NULL DEFAULT 0,
+    objects BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO storage_usage (user_id, bytes, objects)
+SELECT u.id, COALESCE(SUM(r.size), 0), COUNT(r.id)
+FROM users u LEFT JOIN resources r ON r.user_id = u.id
+GROUP BY u.id;
@@ -0,0 +1,11 @@
+ALTER TABLE resources ADD COLUMN has_preview BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE TABLE preview_tasks (
+    id BIGSERIAL PRIMARY KEY,
+    resource_id BIGINT NOT NULL REFERENCES resources(id) ON DELETE CASCADE,
+    object_key TEXT NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    locked_until TIMESTAMPTZ
+);
+
+CREATE INDEX preview_tasks_resource_idx ON preview_tasks (resource_id);
@@ -0,0 +1,13 @@
+CREATE TABLE jobs (
+    id UUID PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    type VARCHAR(32) NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    path TEXT NOT NULL,
+    processed BIGINT NOT NULL DEFAULT 0,
+    error TEXT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX jobs_user_idx ON jobs (user_id, created_at);
@@ -0,0 +1,28 @@
+package org.filestorage.app.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceControllerTest {
+
+    @Test
+    void shouldStripEncodingSuffixFromEtag() {
+        assertEquals("\"abc\"", ResourceController.identityTag("\"abc-gzip\""));
+        assertEquals("\"abc\"", ResourceController.identityTag("\"abc-zstd\""));
+    }
+
+    @Test
+    void shouldStripWeakPrefix() {
+        assertEquals("\"abc\"", ResourceController.identityTag("W/\"abc\""));
+        assertEquals("\"abc\"", ResourceController.identityTag("W/\"abc-gzip\""));
+    }
+
+    @Test
+    void shouldKeepOtherEtagsUnchanged() {
+        assertEquals("\"abc\"", ResourceController.identityTag("\"abc\""));
+        assertEquals("\"abc-br\"", ResourceController.identityTag("\"abc-br\""));
+        assertEquals("\"gzip-abc\"", ResourceController.identityTag("\"gzip-abc\""));
+    }
+
+}
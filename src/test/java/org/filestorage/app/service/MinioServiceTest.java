@@ -0,0 +1,43 @@
+package org.filestorage.app.service;
+
+import org.filestorage.app.exception.QueryNotValidException;
+import org.filestorage.app.util.ResourcePath;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MinioServiceTest {
+
+    private static String cursor(String after) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(after.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldStartFromBeginningWithoutCursor() {
+        ResourcePath path = ResourcePath.parse("docs/");
+        assertEquals("", MinioService.decodeCursor(null, path));
+        assertEquals("", MinioService.decodeCursor("", path));
+    }
+
+    @Test
+    void shouldDecodeCursorInsideDirectory() {
+        ResourcePath path = ResourcePath.parse("docs/");
+        assertEquals("docs/отчет.txt", MinioService.decodeCursor(cursor("docs/отчет.txt"), path));
+        assertEquals("file.txt", MinioService.decodeCursor(cursor("file.txt"), ResourcePath.ROOT));
+    }
+
+    @Test
+    void shouldRejectMalformedCursor() {
+        assertThrows(QueryNotValidException.class, () -> MinioService.decodeCursor("not base64!", ResourcePath.ROOT));
+    }
+
+    @Test
+    void shouldRejectCursorFromAnotherDirectory() {
+        assertThrows(QueryNotValidException.class,
+                () -> MinioService.decodeCursor(cursor("other/file.txt"), ResourcePath.parse("docs/")));
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.filestorage.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceIndexServiceTest {
+
+    @Test
+    void shouldResolveParentOfFilesAndDirectories() {
+        assertEquals("", ResourceIndexService.parentOf("file.txt"));
+        assertEquals("", ResourceIndexService.parentOf("docs/"));
+        assertEquals("docs/", ResourceIndexService.parentOf("docs/file.txt"));
+        assertEquals("docs/", ResourceIndexService.parentOf("docs/sub/"));
+        assertEquals("docs/sub/", ResourceIndexService.parentOf("docs/sub/a.txt"));
+    }
+
+    @Test
+    void shouldResolveNameOfFilesAndDirectories() {
+        assertEquals("file.txt", ResourceIndexService.nameOf("file.txt"));
+        assertEquals("docs/", ResourceIndexService.nameOf("docs/"));
+        assertEquals("a.txt", ResourceIndexService.nameOf("docs/sub/a.txt"));
+        assertEquals("sub/", ResourceIndexService.nameOf("docs/sub/"));
+    }
+
+    @Test
+    void shouldEscapeLikeWildcardsInPrefix() {
+        assertEquals("%", ResourceIndexService.likePrefix(""));
+        assertEquals("docs/%", ResourceIndexService.likePrefix("docs/"));
+        assertEquals("50\\%\\_off\\\\/%", ResourceIndexService.likePrefix("50%_off\\/"));
+    }
+
+    @Test
+    void shouldEscapeLikeWildcardsInExactMatch() {
+        assertEquals("docs/a.txt", ResourceIndexService.likeExact("docs/a.txt"));
+        assertEquals("a\\_b\\%.txt", ResourceIndexService.likeExact("a_b%.txt"));
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.filestorage.app.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentEncodingTest {
+
+    @Test
+    void shouldReturnNullWithoutAcceptableEncoding() {
+        assertNull(ContentEncoding.negotiate(null, true));
+        assertNull(ContentEncoding.negotiate(" ", true));
+        assertNull(ContentEncoding.negotiate("identity", true));
+        assertNull(ContentEncoding.negotiate("br, deflate", true));
+    }
+
+    @Test
+    void shouldPreferZstdOnEqualWeight() {
+        assertEquals(ContentEncoding.ZSTD, ContentEncoding.negotiate("gzip, zstd", true));
+        assertEquals(ContentEncoding.ZSTD, ContentEncoding.negotiate("gzip;q=0.5, zstd;q=0.5", true));
+    }
+
+    @Test
+    void shouldFallBackToGzipWhenZstdUnavailable() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, zstd", false));
+        assertNull(ContentEncoding.negotiate("zstd", false));
+    }
+
+    @Test
+    void shouldHonourQualityValues() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("zstd;q=0.4, gzip;q=0.8", true));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("zstd;q=0, gzip", true));
+        assertNull(ContentEncoding.negotiate("gzip;q=0", true));
+        assertNull(ContentEncoding.negotiate("gzip;q=abc", true));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("GZIP ; q=1.0", true));
+    }
+
+    @Test
+    void shouldApplyWildcardToUnlistedEncodings() {
+        assertEquals(ContentEncoding.ZSTD, ContentEncoding.negotiate("*", true));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*", false));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("zstd;q=0, *;q=0.5", true));
+        assertEquals(ContentEncoding.ZSTD, ContentEncoding.negotiate("gzip;q=0.2, *", true));
+        assertNull(ContentEncoding.negotiate("*;q=0", true));
+    }
+
+    @Test
+    void shouldTreatXGzipAsGzip() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("x-gzip", true));
+    }
+
+    @Test
+    void shouldLeaveResponseStreamOpenAfterEncoding() throws Exception {
+        ByteArrayOutputStream response = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                fail("response stream closed");
+            }
+        };
+
+        try (OutputStream encoder = ContentEncoding.GZIP.wrap(response, 3)) {
+            encoder.write("hello".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (GZIPInputStream decoder = new GZIPInputStream(new ByteArrayInputStream(response.toByteArray()))) {
+            assertEquals("hello", new String(decoder.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.filestorage.app.util;
+
+import org.filestorage.app.exception.PathNotValidException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourcePathTest {
+
+    @Test
+    void shouldParseRootFromEmptyOrSlash() {
+        assertSame(ResourcePath.ROOT, ResourcePath.parse(null));
+        assertSame(ResourcePath.ROOT, ResourcePath.parse(""));
+        assertSame(ResourcePath.ROOT, ResourcePath.parse("/"));
+        assertEquals("", ResourcePath.ROOT.indexKey());
+    }
+
+    @Test
+    void shouldParseFileAndDirectory() {
+        ResourcePath file = ResourcePath.parse("/docs/report.txt");
+        assertEquals("docs/report.txt", file.value());
+        assertEquals("report.txt", file.name());
+        assertEquals("docs/", file.parent());
+        assertEquals(2, file.depth());
+        assertFalse(file.isDirectory());
+
+        ResourcePath directory = ResourcePath.parse("docs/sub/");
+        assertEquals("sub/", directory.name());
+        assertEquals("docs/", directory.parent());
+        assertTrue(directory.isDirectory());
+        assertTrue(directory.contains(ResourcePath.parse("docs/sub/a.txt")));
+    }
+
+    @Test
+    void shouldDecodeUrlEncodedPath() {
+        assertEquals("my docs/файл.txt", ResourcePath.parse("my+docs/%D1%84%D0%B0%D0%B9%D0%BB.txt").value());
+    }
+
+    @Test
+    void shouldRejectInvalidPaths() {
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("a//b"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("a/../b"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("a/./b"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("a/ /b"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("a/b*c"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("a%2"));
+    }
+
+    @Test
+    void shouldRejectPathsThatDecodeToNothing() {
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("%00"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("%01%02"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("\u0001"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("/%00"));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.parse("docs/").resolve("%00"));
+    }
+
+    @Test
+    void shouldAppendNameToDirectory() {
+        ResourcePath appended = ResourcePath.parse("docs/").append("report (1).txt");
+        assertEquals("docs/report (1).txt", appended.value());
+        assertEquals("report (1).txt", appended.name());
+        assertEquals(2, appended.depth());
+
+        ResourcePath nested = ResourcePath.ROOT.append("a/b/");
+        assertEquals("b/", nested.name());
+        assertEquals("a/", nested.parent());
+        assertEquals(2, nested.depth());
+    }
+
+    @Test
+    void shouldRejectInvalidAppendedNames() {
+        ResourcePath directory = ResourcePath.parse("docs/");
+
+        assertThrows(PathNotValidException.class, () -> ResourcePath.ROOT.append(""));
+        assertThrows(PathNotValidException.class, () -> ResourcePath.ROOT.append(null));
+        assertThrows(PathNotValidException.class, () -> directory.append(".."));
+        assertThrows(PathNotValidException.class, () -> directory.append("a/../b"));
+        assertThrows(PathNotValidException.class, () -> directory.append("/etc"));
+        assertThrows(PathNotValidException.class, () -> directory.append("a//b"));
+    }
+}
@@ -0,0 +1,156 @@
+package org.filestorage.app.util;
+
+import com.google.common.io.ByteStreams;
+import okhttp3.Headers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorageCodecTest {
+
+    private StorageCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        codec = new StorageCodec();
+        ReflectionTestUtils.setField(codec, "enabled", true);
+        ReflectionTestUtils.setField(codec, "minSize", DataSize.ofKilobytes(4));
+        ReflectionTestUtils.setField(codec, "level", 3);
+        ReflectionTestUtils.setField(codec, "maxRatio", 0.9);
+        codec.init();
+    }
+
+    private static byte[] text(int size) {
+        byte[] line = "2026-10-17 INFO request served in 12 ms\n".getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = line[i % line.length];
+        }
+        content[size / 2] = '#';
+        return content;
+    }
+
+    private static Headers headers(Map<String, String> metadata) {
+        Headers.Builder headers = new Headers.Builder();
+        metadata.forEach((key, value) -> headers.add("x-amz-meta-" + key, value));
+        return headers.build();
+    }
+
+    private static byte[] stored(StorageCodec.Encoded encoded) throws IOException {
+        try (InputStream stream = encoded.stream()) {
+            return stream.readAllBytes();
+        }
+    }
+
+    @Test
+    void shouldRoundTripCompressibleContent() throws IOException {
+        byte[] content = text(300 * 1024);
+
+        StorageCodec.Encoded encoded = codec.encode(new ByteArrayInputStream(content), content.length);
+        byte[] stored = stored(encoded);
+        Headers headers = headers(encoded.metadata());
+
+        assertEquals(-1, encoded.size());
+        assertTrue(StorageCodec.isEncoded(headers));
+        assertTrue(stored.length < content.length / 10);
+        assertEquals(content.length, StorageCodec.originalSize(headers, stored.length));
+        assertArrayEquals(content, codec.decode(headers, new ByteArrayInputStream(stored)).readAllBytes());
+    }
+
+    @Test
+    void shouldReadRangesOfDecodedContent() throws IOException {
+        byte[] content = text(300 * 1024);
+        StorageCodec.Encoded encoded = codec.encode(new ByteArrayInputStream(content), content.length);
+        byte[] stored = stored(encoded);
+        Headers headers = headers(encoded.metadata());
+
+        long[][] ranges = {{0, 10}, {64 * 1024 - 5, 10}, {content.length / 2 - 1, 3}, {content.length - 7, 7}};
+        for (long[] range : ranges) {
+            InputStream decoded = codec.decode(headers, new ByteArrayInputStream(stored));
+            decoded.skipNBytes(range[0]);
+            byte[] slice = ByteStreams.limit(decoded, range[1]).readAllBytes();
+
+            int from = (int) range[0];
+            assertArrayEquals(Arrays.copyOfRange(content, from, from + (int) range[1]), slice);
+        }
+    }
+
+    @Test
+    void shouldKeepUnknownSizeUnknown() throws IOException {
+        byte[] content = text(100 * 1024);
+
+        StorageCodec.Encoded encoded = codec.encode(new ByteArrayInputStream(content), -1);
+        Headers headers = headers(encoded.metadata());
+
+        assertTrue(StorageCodec.isEncoded(headers));
+        assertNull(StorageCodec.originalSize(headers, 123));
+        assertArrayEquals(content, codec.decode(headers, new ByteArrayInputStream(stored(encoded))).readAllBytes());
+    }
+
+    @Test
+    void shouldStoreIncompressibleContentAsIs() throws IOException {
+        byte[] content = new byte[200 * 1024];
+        new Random(42).nextBytes(content);
+
+        StorageCodec.Encoded encoded = codec.encode(new ByteArrayInputStream(content), content.length);
+        Headers headers = headers(encoded.metadata());
+
+        assertTrue(encoded.metadata().isEmpty());
+        assertEquals(content.length, encoded.size());
+        assertFalse(StorageCodec.isEncoded(headers));
+        assertEquals(content.length, StorageCodec.originalSize(headers, content.length));
+        assertArrayEquals(content, stored(encoded));
+    }
+
+    @Test
+    void shouldNotEncodeSmallContent() throws IOException {
+        byte[] content = text(1024);
+
+        StorageCodec.Encoded encoded = codec.encode(new ByteArrayInputStream(content), content.length);
+
+        assertTrue(encoded.metadata().isEmpty());
+        assertArrayEquals(content, stored(encoded));
+    }
+
+    @Test
+    void shouldCompressInChunksWithZstdCompressingInputStream() throws IOException {
+        byte[] content = text(500 * 1024);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (InputStream input = new ZstdCompressingInputStream(new ByteArrayInputStream(content), 3)) {
+            compressed.write(input.read());
+            byte[] buffer = new byte[1000];
+            int read;
+            while ((read = input.read(buffer, 0, buffer.length)) != -1) {
+                compressed.write(buffer, 0, read);
+            }
+        }
+
+        Headers headers = headers(Map.of("codec", StorageCodec.CODEC_ZSTD));
+        assertArrayEquals(content, codec.decode(headers, new ByteArrayInputStream(compressed.toByteArray())).readAllBytes());
+    }
+
+    @Test
+    void shouldHandleEmptySourceInZstdCompressingInputStream() throws IOException {
+        byte[] compressed;
+        try (InputStream input = new ZstdCompressingInputStream(InputStream.nullInputStream(), 3)) {
+            compressed = input.readAllBytes();
+        }
+
+        Headers headers = headers(Map.of("codec", StorageCodec.CODEC_ZSTD));
+        assertEquals(0, codec.decode(headers, new ByteArrayInputStream(compressed)).readAllBytes().length);
+    }
+
+}